@@ -2,8 +2,6 @@ package com.yona.plugin.services;
 
 import android.annotation.TargetApi;
 import android.app.*;
-import android.app.usage.UsageStats;
-import android.app.usage.UsageStatsManager;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
@@ -17,22 +15,16 @@ import android.util.Log;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
-import java.util.Date;
-import java.util.List;
 import java.util.Locale;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 
 import nu.yona.app.R;
 import com.yona.plugin.services.api.manager.APIManager;
-import com.yona.plugin.services.api.model.Activity;
 import com.yona.plugin.services.api.receiver.YonaReceiver;
-import com.yona.plugin.services.api.service.Stopwatch;
+import com.yona.plugin.services.api.service.AppDictionary;
+import com.yona.plugin.services.api.service.ForegroundAppDetector;
+import com.yona.plugin.services.api.service.MonitoringScheduler;
+import com.yona.plugin.services.api.service.SessionTracker;
 import com.yona.plugin.services.utils.AppConstant;
-import com.yona.plugin.services.utils.AppUtils;
-import com.yona.plugin.services.utils.DateUtility;
 import com.yona.plugin.services.utils.Logger;
 
 import static com.yona.plugin.services.utils.AppConstant.APP_MONITOR_NOTIFICATION_ID;
@@ -48,17 +40,16 @@ public class AppMonitoringService extends Service {
     private static String NOTIFICATION_TITLE =
             "Monitoring app usage";
 
-    private static String currentApp;
-
-	private final Stopwatch stopWatch = new Stopwatch();
+	private PowerManager powerManager;
 
-	private String previousAppName;
+	private ForegroundAppDetector foregroundAppDetector;
 
-	private PowerManager powerManager;
+	private SessionTracker sessionTracker;
 
-	private Date startTime, endTime;
+	// Switches before this time happened while no session was tracked, for instance while the screen was off.
+	private long trackingSince;
 
-	private ScheduledFuture scheduledFuture;
+	private boolean foregroundChanged;
 
     private static final YonaReceiver receiver = new YonaReceiver();
 
@@ -80,6 +71,7 @@ public class AppMonitoringService extends Service {
 
         restartReceiver();
         powerManager = ((PowerManager) getApplicationContext().getSystemService(Context.POWER_SERVICE));
+        sessionTracker = new SessionTracker(APIManager.getInstance().getActivityManager(getApplicationContext()));
     }
 
     private void restartReceiver()
@@ -145,46 +137,42 @@ public class AppMonitoringService extends Service {
     public void onDestroy()
     {
         shutdownScheduler();
-        endTime = new Date();
-        updateOnServer(previousAppName);
+        sessionTracker.close();
+        APIManager.getInstance().getActivityManager(getApplicationContext()).flushActivities();
         removeActivityMonitoringNotification();
         super.onDestroy();
     }
 
-    private static String printForegroundTask(Context context)
+    private int printForegroundTask()
 	{
-		currentApp = "NULL";
+		int currentAppId = AppDictionary.NO_APP_ID;
 		try
 		{
 			if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP)
 			{
-				UsageStatsManager usm = (UsageStatsManager) context.getSystemService(Context.USAGE_STATS_SERVICE);
-				long time = System.currentTimeMillis();
-				List<UsageStats> appList = usm.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, time - AppConstant.ONE_SECOND * AppConstant.ONE_SECOND, time);
-				if (appList != null && appList.size() > 0)
-				{
-					SortedMap<Long, UsageStats> mySortedMap = new TreeMap<>();
-					for (UsageStats usageStats : appList)
-					{
-						mySortedMap.put(usageStats.getLastTimeUsed(), usageStats);
-					}
-					if (!mySortedMap.isEmpty())
-					{
-						currentApp = mySortedMap.get(mySortedMap.lastKey()).getPackageName();
-					}
-				}
+				currentAppId = getForegroundAppDetector().readForegroundChanges(this::openSession);
 			}
 			else
 			{
-				ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
-				currentApp = am.getRunningAppProcesses().get(0).processName;
+				ActivityManager am = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+				currentAppId = AppDictionary.getInstance(getApplicationContext()).getId(am.getRunningAppProcesses().get(0).processName);
 			}
 		}
 		catch (Exception e)
 		{
 			Logger.loge(AppMonitoringService.class, e.getMessage());
 		}
-		return currentApp;
+		return currentAppId;
+	}
+
+	@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+	private ForegroundAppDetector getForegroundAppDetector()
+	{
+		if (foregroundAppDetector == null)
+		{
+			foregroundAppDetector = new ForegroundAppDetector(getApplicationContext());
+		}
+		return foregroundAppDetector;
 	}
 
     /**
@@ -199,6 +187,8 @@ public class AppMonitoringService extends Service {
         filter.addAction(Intent.ACTION_SCREEN_ON);
         filter.addAction(Intent.ACTION_SCREEN_OFF);
         filter.addAction(Intent.ACTION_BOOT_COMPLETED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
         filter.addAction(AppConstant.RESTART_DEVICE);
         filter.addAction(AppConstant.RESTART_VPN);
         filter.addAction(AppConstant.CONNECT_VPN);
@@ -209,71 +199,59 @@ public class AppMonitoringService extends Service {
 
     private void scheduleMethod()
 	{
-
-		scheduledFuture = AppUtils.getInitializeScheduler().scheduleAtFixedRate(new Runnable()
-		{
-
-			@Override
-			public void run()
-			{
-				if (AppUtils.getScheduler() == null)
-				{
-					scheduledFuture.cancel(true);
-					return;
-				}
-				// This method will check for the Running apps after every 5000ms
-				checkRunningApps();
-			}
-		}, 0, AppConstant.ONE_SECOND, TimeUnit.MILLISECONDS);
+		MonitoringScheduler.getInstance().start(monitoringTask);
 	}
 
-	private void checkRunningApps()
+	private final MonitoringScheduler.MonitoringTask monitoringTask = new MonitoringScheduler.MonitoringTask()
 	{
-		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH && !powerManager.isInteractive())
+		@Override
+		public boolean onTick()
 		{
-			endTime = new Date();
-			stopWatch.stop();
-			updateOnServer(previousAppName);
-			return;
+			return checkRunningApps();
 		}
-		final String apppackagename = printForegroundTask(this);
-		if (stopWatch.isStarted())
+
+		@Override
+		public void onSuspend()
 		{
-			if (!previousAppName.equalsIgnoreCase(apppackagename))
-			{
-				endTime = new Date();
-				updateOnServer(previousAppName);
-				//once updated on server, start new tracking again.
-				previousAppName = apppackagename;
-				stopWatch.stop();
-				startTime = new Date();
-				stopWatch.start();
-			}//else if both are same package, we don't need to track.
+			// The screen went off, so the current app is no longer being used.
+			sessionTracker.close();
+			// The process may be killed while the screen is off, do not keep the sessions in memory.
+			APIManager.getInstance().getActivityManager(getApplicationContext()).flushActivities();
 		}
-		else
+
+		@Override
+		public void onFlush()
 		{
-			startTime = new Date();
-			stopWatch.start();
-			previousAppName = apppackagename;
+			APIManager.getInstance().getActivityManager(getApplicationContext()).flushDueActivities();
 		}
-	}
+	};
 
-    private Activity getAppActivity(String applicationName, Date startDate, Date endDate)
-    {
-        Activity activity = new Activity();
-        activity.setApplication(applicationName);
-        activity.setStartTime(DateUtility.getLongFormatDate(startDate));
-        activity.setEndTime(DateUtility.getLongFormatDate(endDate));
-        return activity;
-    }
+	private boolean checkRunningApps()
+	{
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH && !powerManager.isInteractive())
+		{
+			// Missed the screen off broadcast, suspend until the screen is turned on again.
+			MonitoringScheduler.getInstance().suspend();
+			return false;
+		}
+		foregroundChanged = false;
+		trackingSince = sessionTracker.isOpen() ? 0 : System.currentTimeMillis();
+		// Every switch since the previous tick opens a session, so short visits are not added to the previous app.
+		final int appId = printForegroundTask();
+		// The detector only reports switches, the app may have stayed in the foreground while the session was closed.
+		openSession(appId, System.currentTimeMillis());
+		// Before Lollipop only the current app is known, so the loop keeps its shortest interval.
+		return foregroundChanged || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP;
+	}
 
-    private void updateOnServer(String pkgname)
+	private void openSession(int applicationId, long since)
 	{
-		Logger.logi(AppMonitoringService.class, "pck: " + pkgname);
-		if (previousAppName != null && !pkgname.equals("NULL") && startTime != null && endTime != null && startTime.before(endTime))
+		if (sessionTracker.isOpen() && sessionTracker.getApplicationId() == applicationId)
 		{
-			APIManager.getInstance().getActivityManager(getApplicationContext()).postActivityToDB(previousAppName, startTime, endTime);
+			return; // Same package, we don't need to track.
 		}
+		sessionTracker.open(applicationId, Math.max(since, trackingSince));
+		foregroundChanged = true;
 	}
 
     @Override
@@ -283,6 +261,8 @@ public class AppMonitoringService extends Service {
         SharedPreferences sp = getApplicationContext().getSharedPreferences(AppConstant.USER_PREFERENCE_KEY, Context.MODE_PRIVATE);
         sp.edit().putBoolean(AppConstant.TERMINATED_APP, true).commit();
         shutdownScheduler();
+        sessionTracker.close();
+        APIManager.getInstance().getActivityManager(getApplicationContext()).flushActivities();
         restartService();
         super.onTaskRemoved(rootIntent);
     }
@@ -291,16 +271,7 @@ public class AppMonitoringService extends Service {
 	{
 		try
 		{
-			if (AppUtils.getScheduler() != null)
-			{
-                AppUtils.getScheduler().shutdownNow();
-                AppUtils.setNullScheduler();
-			}
-			if (scheduledFuture != null)
-			{
-				scheduledFuture.cancel(true);
-				scheduledFuture = null;
-			}
+			MonitoringScheduler.getInstance().stop();
 		}
 		catch (Exception e)
 		{
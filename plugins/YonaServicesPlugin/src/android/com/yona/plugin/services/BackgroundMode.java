@@ -21,7 +21,10 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONException;
 
+import com.yona.plugin.services.api.db.DatabaseHelper;
+import com.yona.plugin.services.api.manager.network.HttpClientProvider;
 import com.yona.plugin.services.api.receiver.YonaReceiver;
+import com.yona.plugin.services.api.service.MonitoringScheduler;
 import com.yona.plugin.services.utils.AppUtils;
 import com.yona.plugin.services.utils.Logger;
 
@@ -81,6 +84,12 @@ public class BackgroundMode extends CordovaPlugin {
         } else if ( action.equalsIgnoreCase("postActivitiesToServer") ) {
             this.postActivitiesToServer(callback);
             return true;
+        } else if ( action.equalsIgnoreCase("getMonitoringMetrics") ) {
+            this.getMonitoringMetrics(callback);
+            return true;
+        } else if ( action.equalsIgnoreCase("getNetworkMetrics") ) {
+            this.getNetworkMetrics(callback);
+            return true;
         } else if ( action.equalsIgnoreCase("createNotificationChannel") ) {
             this.createNotificationChannel(callback);
             return true;
@@ -171,6 +180,25 @@ public class BackgroundMode extends CordovaPlugin {
         callbackContext.success("true");
     }
 
+    private void getMonitoringMetrics(CallbackContext callbackContext) throws JSONException {
+        MonitoringScheduler scheduler = MonitoringScheduler.getInstance();
+        JSONObject metrics = new JSONObject();
+        metrics.put("wakeupsPerHour", scheduler.getWakeupsPerHour());
+        metrics.put("totalWakeups", scheduler.getTotalWakeups());
+        metrics.put("currentInterval", scheduler.getCurrentInterval());
+        metrics.put("suspended", scheduler.isSuspended());
+        Context context = this.cordova.getActivity().getApplicationContext();
+        DatabaseHelper databaseHelper = DatabaseHelper.getInstance(context);
+        metrics.put("databaseStorageMode", databaseHelper.getStorageMode().name());
+        metrics.put("databaseWriter", databaseHelper.getWriter().toJson());
+        callbackContext.success(metrics);
+    }
+
+    private void getNetworkMetrics(CallbackContext callbackContext) throws JSONException {
+        Context context = this.cordova.getActivity().getApplicationContext();
+        callbackContext.success(HttpClientProvider.getInstance(context).getNetworkMetrics().toJson());
+    }
+
     private void createNotificationChannel(CallbackContext callbackContext) {
         Context context = this.cordova.getActivity().getApplicationContext();
         AppUtils.createNotificationChanngel(context);
@@ -3,6 +3,8 @@ package com.yona.plugin.services;
 import android.content.Context;
 
 import com.yona.plugin.services.api.manager.dao.AuthenticateDAO;
+import com.yona.plugin.services.enums.ActivityStoreType;
+import com.yona.plugin.services.enums.StorageMode;
 import com.yona.plugin.services.state.SharedPreference;
 
 import org.apache.cordova.CallbackContext;
@@ -96,6 +98,81 @@ public class UserPreferences extends CordovaPlugin {
             return true;
         }
 
+        if (action.equals("setRequestCompression")) {
+            cordova.getThreadPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        boolean value = args.getBoolean(VALUE);
+
+                        boolean success = getSharedPreferences()
+                                .setRequestCompressionEnabled(value);
+
+                        if (success) {
+                            callbackContext.success();
+                            return;
+                        }
+
+                        callbackContext.error(FAILED_TO_WRITE);
+                    } catch (Exception e) {
+                        callbackContext.error(e.getMessage());
+                    }
+                }
+            });
+
+            return true;
+        }
+
+        if (action.equals("setDatabaseStorageMode")) {
+            cordova.getThreadPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        StorageMode value = StorageMode.valueOf(args.getString(VALUE));
+
+                        boolean success = getSharedPreferences()
+                                .setDatabaseStorageMode(value);
+
+                        if (success) {
+                            callbackContext.success();
+                            return;
+                        }
+
+                        callbackContext.error(FAILED_TO_WRITE);
+                    } catch (Exception e) {
+                        callbackContext.error(e.getMessage());
+                    }
+                }
+            });
+
+            return true;
+        }
+
+        if (action.equals("setActivityStore")) {
+            cordova.getThreadPool().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ActivityStoreType value = ActivityStoreType.valueOf(args.getString(VALUE));
+
+                        boolean success = getSharedPreferences()
+                                .setActivityStoreType(value);
+
+                        if (success) {
+                            callbackContext.success();
+                            return;
+                        }
+
+                        callbackContext.error(FAILED_TO_WRITE);
+                    } catch (Exception e) {
+                        callbackContext.error(e.getMessage());
+                    }
+                }
+            });
+
+            return true;
+        }
+
         if (action.equals("getMigrationData")) {
             cordova.getThreadPool().execute(new Runnable() {
                 @Override
@@ -20,7 +20,19 @@ public interface DBConstant
     /**
      * The constant DATABASE_VERSION.
      */
-    int DATABASE_VERSION = 1;
+    int DATABASE_VERSION = 4;
+    /**
+     * The constant DATABASE_WRITE_QUEUE_CAPACITY, the number of writes queued before writers block.
+     */
+    int DATABASE_WRITE_QUEUE_CAPACITY = 256;
+    /**
+     * The constant DATABASE_CACHE_SIZE_KIB, the page cache of the writing connection in KiB.
+     */
+    int DATABASE_CACHE_SIZE_KIB = 2048;
+    /**
+     * The constant WAL_CHECKPOINT_INTERVAL, the number of commits after which the write-ahead log is checkpointed once the writer is idle.
+     */
+    int WAL_CHECKPOINT_INTERVAL = 100;
     /**
      * The constant NO_DATA_ERROR.
      */
@@ -42,6 +54,16 @@ public interface DBConstant
      * The constant TBL_ACTIVITY_TRACKER.
      */
     String TBL_ACTIVITY_TRACKER = "activityTracker";
+
+    /**
+     * The constant TBL_APPS, the dictionary of package names referenced by activities.
+     */
+    String TBL_APPS = "apps";
+
+    /**
+     * The constant IDX_ACTIVITY_SESSION, a unique index on application and start time.
+     */
+    String IDX_ACTIVITY_SESSION = "activitySession";
     /** DB TABLES **/
 
     /**
@@ -56,8 +78,28 @@ public interface DBConstant
      * DB Fields
      */
 
+    String ACTIVITY_ID = "_id";
+
+    /**
+     * The constant APPLICATION_NAME.
+     */
     String APPLICATION_NAME = "applicationName";
 
+    /**
+     * The constant APPLICATION_ID, referencing {@link #APP_ID} in the apps table.
+     */
+    String APPLICATION_ID = "applicationId";
+
+    /**
+     * The constant APP_ID.
+     */
+    String APP_ID = "appId";
+
+    /**
+     * The constant PACKAGE_NAME.
+     */
+    String PACKAGE_NAME = "packageName";
+
     /**
      * The constant APPLICATION_START_TIME.
      */
@@ -68,8 +110,4 @@ public interface DBConstant
      */
     String APPLICATION_END_TIME = "applicationEndTime";
 
-    /**
-     * The DB App activity fetch ROW_LIMIT.
-     */
-    String ACTIVITY_FETCH_ROW_LIMIT = "100";
 }
@@ -12,13 +12,32 @@ class DBHelper
     private final String FIELD_TEXT = " TEXT,";
     private final String FIELD_TEXT_WITHOUT_COMMA = " TEXT";
     /**
-     * The Table activity tracker.
+     * The Table activity tracker. Rows are uploaded and deleted in order of their id, times are
+     * milliseconds since the epoch.
      */
     public final String TABLE_ACTIVITY_TRACKER = CREATE_TABLE_IF_NOT_EXISTS + DBConstant.TBL_ACTIVITY_TRACKER
             + "("
-            + DBConstant.APPLICATION_NAME + FIELD_TEXT
-            + DBConstant.APPLICATION_START_TIME + FIELD_TEXT
-            + DBConstant.APPLICATION_END_TIME + FIELD_TEXT_WITHOUT_COMMA
+            + DBConstant.ACTIVITY_ID + FIELD_INTEGER_PRIMARY_KEY
+            + DBConstant.APPLICATION_ID + FIELD_INTEGER
+            + DBConstant.APPLICATION_START_TIME + FIELD_INTEGER
+            + DBConstant.APPLICATION_END_TIME + FIELD_INTEGER_WITHOUT_COMMA
+            + ")";
+    /**
+     * The Table apps, which stores every package name once.
+     */
+    public final String TABLE_APPS = CREATE_TABLE_IF_NOT_EXISTS + DBConstant.TBL_APPS
+            + "("
+            + DBConstant.APP_ID + FIELD_INTEGER_PRIMARY_KEY
+            + DBConstant.PACKAGE_NAME + " TEXT NOT NULL UNIQUE"
+            + ")";
+    /**
+     * The Index activity session, which makes (application, start time) identify a session.
+     */
+    public final String INDEX_ACTIVITY_SESSION = "CREATE UNIQUE INDEX IF NOT EXISTS " + DBConstant.IDX_ACTIVITY_SESSION
+            + " ON " + DBConstant.TBL_ACTIVITY_TRACKER
+            + "("
+            + DBConstant.APPLICATION_ID + ","
+            + DBConstant.APPLICATION_START_TIME
             + ")";
     private final String FIELD_BLOB = " BLOB,";
     private final String FIELD_BOOLEAN = " BOOLEAN,";
@@ -8,11 +8,17 @@
 
 package com.yona.plugin.services.api.db;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.yona.plugin.services.api.service.AppDictionary;
+import com.yona.plugin.services.enums.StorageMode;
+import com.yona.plugin.services.state.SharedPreference;
 import com.yona.plugin.services.utils.Logger;
+import com.yona.plugin.services.utils.TimestampCodec;
 
 public class DatabaseHelper extends SQLiteOpenHelper
 {
@@ -20,15 +26,27 @@ public class DatabaseHelper extends SQLiteOpenHelper
     private static DatabaseHelper mInstance = null;
     private DBHelper dbHelper;
     private SQLiteDatabase db;
+    private final StorageMode storageMode;
+    private final DatabaseWriter writer;
 
     private DatabaseHelper(Context context)
     {
-        super(context, DBConstant.DATABASE_NAME, null, DBConstant.DATABASE_VERSION);
+        this(context, DBConstant.DATABASE_NAME);
+    }
+
+    private DatabaseHelper(Context context, String name)
+    {
+        super(context, name, null, DBConstant.DATABASE_VERSION);
+        storageMode = new SharedPreference(context).getDatabaseStorageMode();
+        // Set explicitly, as some Android versions enable write-ahead logging by default.
+        setWriteAheadLoggingEnabled(storageMode == StorageMode.WRITE_AHEAD_LOG);
         synchronized (this)
         {
-            Logger.logi(DatabaseHelper.class, "DatabaseHelper constructor called");
+            Logger.logi(DatabaseHelper.class, "DatabaseHelper constructor called, storage mode " + storageMode);
             this.getWritableDatabase();
         }
+        writer = new DatabaseWriter(this, DBConstant.DATABASE_WRITE_QUEUE_CAPACITY,
+                storageMode == StorageMode.WRITE_AHEAD_LOG ? DBConstant.WAL_CHECKPOINT_INTERVAL : 0);
     }
 
     /**
@@ -46,6 +64,60 @@ public class DatabaseHelper extends SQLiteOpenHelper
         return mInstance;
     }
 
+    /**
+     * Opens a database with the same schema that is separate from the database of the app, for benchmarks.
+     * The caller closes it and deletes it with {@link Context#deleteDatabase(String)}.
+     *
+     * @param context the context
+     * @param name    the database name
+     * @return the database helper
+     */
+    public static DatabaseHelper openSeparateDatabase(Context context, String name)
+    {
+        return new DatabaseHelper(context, name);
+    }
+
+    /**
+     * Gets storage mode.
+     *
+     * @return the storage mode the database was opened with
+     */
+    public StorageMode getStorageMode()
+    {
+        return storageMode;
+    }
+
+    /**
+     * Gets writer.
+     *
+     * @return the writer, which runs all writes to this database
+     */
+    public DatabaseWriter getWriter()
+    {
+        return writer;
+    }
+
+    @Override
+    public void close()
+    {
+        // Not synchronized: the writer opens the database through the synchronized getWritableDatabase(), so it
+        // is stopped before the lock is taken, which super.close() takes itself.
+        writer.shutdown();
+        super.close();
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db)
+    {
+        // Only the connection that writes is configured, reads use the defaults.
+        db.execSQL("PRAGMA cache_size = -" + DBConstant.DATABASE_CACHE_SIZE_KIB);
+        if (storageMode == StorageMode.WRITE_AHEAD_LOG)
+        {
+            // A commit is durable once the log is synced at a checkpoint, a crash can only lose the commits since.
+            db.execSQL("PRAGMA synchronous = NORMAL");
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db)
     {
@@ -56,7 +128,90 @@ public class DatabaseHelper extends SQLiteOpenHelper
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
     {
+        if (oldVersion < 2)
+        {
+            upgradeToActivitySessionIndex(db);
+        }
+        if (oldVersion < 3)
+        {
+            upgradeToAppDictionary(db);
+        }
+        if (oldVersion < 4)
+        {
+            upgradeToEpochTimes(db);
+        }
+    }
+
+    private void upgradeToActivitySessionIndex(SQLiteDatabase db)
+    {
+        // Older versions stored a row for every second the screen was off, keep the longest one of each session.
+        db.execSQL("DELETE FROM " + DBConstant.TBL_ACTIVITY_TRACKER
+                + " WHERE rowid NOT IN (SELECT MAX(rowid) FROM " + DBConstant.TBL_ACTIVITY_TRACKER
+                + " GROUP BY " + DBConstant.APPLICATION_NAME + ", " + DBConstant.APPLICATION_START_TIME + ")");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + DBConstant.IDX_ACTIVITY_SESSION
+                + " ON " + DBConstant.TBL_ACTIVITY_TRACKER
+                + "(" + DBConstant.APPLICATION_NAME + "," + DBConstant.APPLICATION_START_TIME + ")");
+    }
 
+    private void upgradeToAppDictionary(SQLiteDatabase db)
+    {
+        // Move the package names into the apps table and let the activity rows reference them by id.
+        String oldTable = DBConstant.TBL_ACTIVITY_TRACKER + "_v2";
+        db.execSQL(getDBHelper().TABLE_APPS);
+        db.execSQL("INSERT OR IGNORE INTO " + DBConstant.TBL_APPS + "(" + DBConstant.PACKAGE_NAME + ")"
+                + " SELECT DISTINCT " + DBConstant.APPLICATION_NAME + " FROM " + DBConstant.TBL_ACTIVITY_TRACKER
+                + " WHERE " + DBConstant.APPLICATION_NAME + " IS NOT NULL");
+        db.execSQL("DROP INDEX IF EXISTS " + DBConstant.IDX_ACTIVITY_SESSION);
+        db.execSQL("ALTER TABLE " + DBConstant.TBL_ACTIVITY_TRACKER + " RENAME TO " + oldTable);
+        // The version 3 layout, spelled out as later versions change the table again.
+        db.execSQL("CREATE TABLE " + DBConstant.TBL_ACTIVITY_TRACKER
+                + "(" + DBConstant.APPLICATION_ID + " INTEGER," + DBConstant.APPLICATION_START_TIME + " TEXT," + DBConstant.APPLICATION_END_TIME + " TEXT)");
+        db.execSQL("CREATE UNIQUE INDEX " + DBConstant.IDX_ACTIVITY_SESSION
+                + " ON " + DBConstant.TBL_ACTIVITY_TRACKER
+                + "(" + DBConstant.APPLICATION_ID + "," + DBConstant.APPLICATION_START_TIME + ")");
+        db.execSQL("INSERT OR REPLACE INTO " + DBConstant.TBL_ACTIVITY_TRACKER
+                + "(" + DBConstant.APPLICATION_ID + "," + DBConstant.APPLICATION_START_TIME + "," + DBConstant.APPLICATION_END_TIME + ")"
+                + " SELECT a." + DBConstant.APP_ID + ", t." + DBConstant.APPLICATION_START_TIME + ", t." + DBConstant.APPLICATION_END_TIME
+                + " FROM " + oldTable + " t JOIN " + DBConstant.TBL_APPS + " a ON a." + DBConstant.PACKAGE_NAME + " = t." + DBConstant.APPLICATION_NAME);
+        db.execSQL("DROP TABLE " + oldTable);
+    }
+
+    private void upgradeToEpochTimes(SQLiteDatabase db)
+    {
+        // Rebuild the table with a row id and integer times, parsing the formatted times of the stored rows.
+        String oldTable = DBConstant.TBL_ACTIVITY_TRACKER + "_v3";
+        db.execSQL("DROP INDEX IF EXISTS " + DBConstant.IDX_ACTIVITY_SESSION);
+        db.execSQL("ALTER TABLE " + DBConstant.TBL_ACTIVITY_TRACKER + " RENAME TO " + oldTable);
+        db.execSQL(getDBHelper().TABLE_ACTIVITY_TRACKER);
+        db.execSQL(getDBHelper().INDEX_ACTIVITY_SESSION);
+
+        TimestampCodec timestampCodec = TimestampCodec.getInstance();
+        ContentValues values = new ContentValues();
+        Cursor c = db.rawQuery("SELECT t." + DBConstant.APPLICATION_ID + ", t." + DBConstant.APPLICATION_START_TIME + ", t." + DBConstant.APPLICATION_END_TIME
+                + " FROM " + oldTable + " t JOIN " + DBConstant.TBL_APPS + " a ON a." + DBConstant.APP_ID + " = t." + DBConstant.APPLICATION_ID
+                + " WHERE a." + DBConstant.PACKAGE_NAME + " != ? ORDER BY t.rowid", new String[]{AppDictionary.NO_APP});
+        try
+        {
+            while (c.moveToNext())
+            {
+                try
+                {
+                    values.put(DBConstant.APPLICATION_ID, c.getInt(0));
+                    values.put(DBConstant.APPLICATION_START_TIME, timestampCodec.parse(c.getString(1)));
+                    values.put(DBConstant.APPLICATION_END_TIME, timestampCodec.parse(c.getString(2)));
+                    db.insertWithOnConflict(DBConstant.TBL_ACTIVITY_TRACKER, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    Logger.loge(DatabaseHelper.class, e.getMessage());
+                }
+            }
+        }
+        finally
+        {
+            c.close();
+        }
+        db.execSQL("DROP TABLE " + oldTable);
     }
 
     private void createTables(SQLiteDatabase db)
@@ -64,7 +219,9 @@ public class DatabaseHelper extends SQLiteOpenHelper
         try
         {
             db.execSQL(getDBHelper().TABLE_USER_REGISTER);
+            db.execSQL(getDBHelper().TABLE_APPS);
             db.execSQL(getDBHelper().TABLE_ACTIVITY_TRACKER);
+            db.execSQL(getDBHelper().INDEX_ACTIVITY_SESSION);
         }
         catch (Exception e)
         {
@@ -80,9 +237,13 @@ public class DatabaseHelper extends SQLiteOpenHelper
         try
         {
             Logger.loge(DatabaseHelper.class, "Delete all data");
-            mInstance.getWritableDatabase().execSQL("DROP TABLE IF EXISTS " + DBConstant.TBL_USER_DATA);
-            mInstance.getWritableDatabase().execSQL("DROP TABLE IF EXISTS " + DBConstant.TBL_ACTIVITY_TRACKER);
-            createTables(mInstance.getWritableDatabase());
+            writer.execute(db ->
+            {
+                db.execSQL("DROP TABLE IF EXISTS " + DBConstant.TBL_USER_DATA);
+                db.execSQL("DROP TABLE IF EXISTS " + DBConstant.TBL_ACTIVITY_TRACKER);
+                createTables(db);
+                return null;
+            });
         }
         catch (Exception e)
         {
@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+
+import com.yona.plugin.services.utils.LatencyHistogram;
+import com.yona.plugin.services.utils.Logger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs all writes to a database on one thread. Writes are queued in a bounded queue, so a writer that gets
+ * ahead of the database blocks until there is room again. The writes that are queued when the thread gets to
+ * them are committed together in one transaction, which costs a single sync to disk for the whole group.
+ * If a write of a group fails, the group is rolled back and its writes are committed one by one, so only the
+ * failing write fails.
+ * When a checkpoint interval is set, the write-ahead log is checkpointed when the writer runs out of writes
+ * after that many commits, instead of by the commit that happens to fill the log. SQLite still checkpoints a
+ * log that grows too large itself.
+ * Writes can keep compiled statements in the writer with {@link #getStatement(SQLiteDatabase, String)}, so
+ * the SQL of a frequent write is only compiled once, and can keep state in step with the database with
+ * {@link #onCommit(Runnable)}, as a write may be rolled back and run again.
+ * Once the writer stopped, because it was shut down or its thread died, writes are refused and the writes
+ * still queued fail, so nobody waits for a write that is never run.
+ */
+public class DatabaseWriter
+{
+    /**
+     * A write, run on the writer thread inside a transaction.
+     *
+     * @param <T> the type of the result
+     */
+    public interface Write<T>
+    {
+        /**
+         * Runs the write.
+         *
+         * @param db the database
+         * @return the result
+         */
+        T run(SQLiteDatabase db);
+    }
+
+    private static final int MAX_GROUP_SIZE = 64;
+
+    private final SQLiteOpenHelper openHelper;
+    private final BlockingQueue<PendingWrite<?>> queue;
+    private final PendingWrite<Void> stop = new PendingWrite<>(null);
+    private final LatencyHistogram commitLatency = new LatencyHistogram();
+    private final LatencyHistogram checkpointLatency = new LatencyHistogram();
+    private final int checkpointInterval;
+    private final Thread thread;
+    private volatile boolean stopped;
+    // Only used on the writer thread.
+    private final Map<String, SQLiteStatement> statements = new HashMap<>();
+    private SQLiteDatabase statementsDb;
+    // Only used on the writer thread.
+    private final List<Runnable> commitActions = new ArrayList<>();
+
+    private long commits;
+    private long writes;
+    private long failedWrites;
+    private int maxQueueDepth;
+    // Only used on the writer thread.
+    private int commitsSinceCheckpoint;
+
+    /**
+     * Instantiates a new Database writer and starts its thread.
+     *
+     * @param openHelper         the open helper
+     * @param capacity           the number of writes that can be queued before writers block
+     * @param checkpointInterval the number of commits after which the write-ahead log is checkpointed, 0 to leave it to SQLite
+     */
+    public DatabaseWriter(SQLiteOpenHelper openHelper, int capacity, int checkpointInterval)
+    {
+        this.openHelper = openHelper;
+        this.checkpointInterval = checkpointInterval;
+        queue = new ArrayBlockingQueue<>(capacity);
+        thread = new Thread(this::processWrites, "DatabaseWriter");
+        thread.start();
+    }
+
+    /**
+     * Queues a write, blocking while the queue is full.
+     *
+     * @param write the write
+     * @param <T>   the type of the result
+     * @return the pending write, to wait for the result
+     * @throws IllegalStateException if the writer stopped
+     */
+    public <T> PendingWrite<T> submit(Write<T> write)
+    {
+        if (stopped)
+        {
+            throw new IllegalStateException("The database writer is stopped");
+        }
+        PendingWrite<T> pendingWrite = new PendingWrite<>(write);
+        if (Thread.currentThread() == thread)
+        {
+            // A write queueing another write would wait for itself, run it as part of the running group.
+            pendingWrite.result = write.run(openHelper.getWritableDatabase());
+            pendingWrite.done.countDown();
+            return pendingWrite;
+        }
+        try
+        {
+            queue.put(pendingWrite);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a database write", e);
+        }
+        if (stopped)
+        {
+            // The writer stopped while this write was queued, it may have missed it.
+            failQueuedWrites();
+        }
+        synchronized (this)
+        {
+            maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+        }
+        return pendingWrite;
+    }
+
+    /**
+     * Queues a write and waits until it is committed.
+     *
+     * @param write the write
+     * @param <T>   the type of the result
+     * @return the result
+     */
+    public <T> T execute(Write<T> write)
+    {
+        return submit(write).get();
+    }
+
+    /**
+     * Waits until the writes queued before are committed.
+     */
+    public void flush()
+    {
+        execute(db -> null);
+    }
+
+    /**
+     * Gets a compiled statement, compiling it the first time. Only call it from a write, statements belong
+     * to the writer thread and are closed when the writer stops.
+     *
+     * @param db  the database passed to the write
+     * @param sql the sql
+     * @return the statement, with the bindings of its previous use
+     */
+    public SQLiteStatement getStatement(SQLiteDatabase db, String sql)
+    {
+        if (Thread.currentThread() != thread)
+        {
+            throw new IllegalStateException("Statements can only be used by writes");
+        }
+        if (db != statementsDb)
+        {
+            // The database was reopened, the statements of the old connection cannot be used anymore.
+            closeStatements();
+            statementsDb = db;
+        }
+        SQLiteStatement statement = statements.get(sql);
+        if (statement == null)
+        {
+            statement = db.compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Runs an action on the writer thread once the transaction of the running write is committed. The action
+     * is dropped when the transaction is rolled back, also when the write is run again by itself afterwards.
+     * Only call it from a write.
+     *
+     * @param action the action
+     */
+    public void onCommit(Runnable action)
+    {
+        if (Thread.currentThread() != thread)
+        {
+            throw new IllegalStateException("Commit actions can only be added by writes");
+        }
+        commitActions.add(action);
+    }
+
+    /**
+     * Gets commits.
+     *
+     * @return the number of transactions committed
+     */
+    public synchronized long getCommits()
+    {
+        return commits;
+    }
+
+    /**
+     * Commits the queued writes and stops the writer thread. Writes queued afterwards fail.
+     */
+    public void shutdown()
+    {
+        try
+        {
+            if (!stopped)
+            {
+                queue.put(stop);
+            }
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        failQueuedWrites();
+    }
+
+    /**
+     * Converts the metrics of the writer to JSON.
+     *
+     * @return the json object
+     * @throws JSONException the json exception
+     */
+    public JSONObject toJson() throws JSONException
+    {
+        JSONObject json = new JSONObject();
+        synchronized (this)
+        {
+            json.put("queueDepth", queue.size());
+            json.put("maxQueueDepth", maxQueueDepth);
+            json.put("commits", commits);
+            json.put("writes", writes);
+            json.put("failedWrites", failedWrites);
+            json.put("stopped", stopped);
+            json.put("writesPerCommit", commits == 0 ? 0 : (double) writes / commits);
+        }
+        json.put("commitLatency", commitLatency.toJson());
+        json.put("checkpointLatency", checkpointLatency.toJson());
+        return json;
+    }
+
+    private void processWrites()
+    {
+        try
+        {
+            commitWrites();
+        }
+        finally
+        {
+            stopped = true;
+            failQueuedWrites();
+        }
+    }
+
+    private void failQueuedWrites()
+    {
+        List<PendingWrite<?>> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        for (PendingWrite<?> pendingWrite : leftover)
+        {
+            if (pendingWrite != stop)
+            {
+                pendingWrite.fail(new IllegalStateException("The database writer is stopped"));
+            }
+        }
+    }
+
+    private void commitWrites()
+    {
+        List<PendingWrite<?>> group = new ArrayList<>(MAX_GROUP_SIZE);
+        boolean stopping = false;
+        while (!stopping)
+        {
+            try
+            {
+                group.add(queue.take());
+            }
+            catch (InterruptedException e)
+            {
+                break;
+            }
+            queue.drainTo(group, MAX_GROUP_SIZE - 1);
+            stopping = group.remove(stop);
+            if (!group.isEmpty())
+            {
+                commit(group);
+                commitsSinceCheckpoint++;
+            }
+            group.clear();
+            if (checkpointInterval > 0 && commitsSinceCheckpoint >= checkpointInterval && queue.isEmpty())
+            {
+                checkpoint();
+            }
+        }
+        closeStatements();
+    }
+
+    private void checkpoint()
+    {
+        commitsSinceCheckpoint = 0;
+        long start = SystemClock.elapsedRealtime();
+        try
+        {
+            // Passive, so readers are never blocked; pages they still use are checkpointed the next time.
+            Cursor c = openHelper.getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+            try
+            {
+                c.moveToFirst();
+            }
+            finally
+            {
+                c.close();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            Logger.loge(DatabaseWriter.class, e.getMessage());
+            return;
+        }
+        checkpointLatency.record(SystemClock.elapsedRealtime() - start);
+    }
+
+    private void closeStatements()
+    {
+        for (SQLiteStatement statement : statements.values())
+        {
+            statement.close();
+        }
+        statements.clear();
+        statementsDb = null;
+    }
+
+    private void commit(List<PendingWrite<?>> group)
+    {
+        long start = SystemClock.elapsedRealtime();
+        commitActions.clear();
+        try
+        {
+            SQLiteDatabase db = openHelper.getWritableDatabase();
+            db.beginTransaction();
+            try
+            {
+                for (PendingWrite<?> pendingWrite : group)
+                {
+                    pendingWrite.run(db);
+                }
+                db.setTransactionSuccessful();
+            }
+            finally
+            {
+                db.endTransaction();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            commitActions.clear();
+            if (group.size() > 1)
+            {
+                Logger.loge(DatabaseWriter.class, "Group commit failed, committing " + group.size() + " writes one by one: " + e.getMessage());
+                for (PendingWrite<?> pendingWrite : group)
+                {
+                    List<PendingWrite<?>> single = new ArrayList<>(1);
+                    single.add(pendingWrite);
+                    commit(single);
+                }
+                return;
+            }
+            Logger.loge(DatabaseWriter.class, e.getMessage());
+            synchronized (this)
+            {
+                failedWrites++;
+            }
+            group.get(0).fail(e);
+            return;
+        }
+        commitLatency.record(SystemClock.elapsedRealtime() - start);
+        for (Runnable action : commitActions)
+        {
+            action.run();
+        }
+        commitActions.clear();
+        synchronized (this)
+        {
+            commits++;
+            writes += group.size();
+        }
+        for (PendingWrite<?> pendingWrite : group)
+        {
+            pendingWrite.done.countDown();
+        }
+    }
+
+    /**
+     * A queued write, completed once its transaction is committed.
+     *
+     * @param <T> the type of the result
+     */
+    public static class PendingWrite<T>
+    {
+        private final Write<T> write;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private T result;
+        private RuntimeException error;
+
+        PendingWrite(Write<T> write)
+        {
+            this.write = write;
+        }
+
+        private void run(SQLiteDatabase db)
+        {
+            result = write.run(db);
+        }
+
+        private void fail(RuntimeException error)
+        {
+            this.error = error;
+            done.countDown();
+        }
+
+        /**
+         * Waits until the write is committed.
+         *
+         * @return the result of the write
+         */
+        public T get()
+        {
+            try
+            {
+                done.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a database write", e);
+            }
+            if (error != null)
+            {
+                throw error;
+            }
+            return result;
+        }
+    }
+}
@@ -1,38 +0,0 @@
-/*
- * Copyright (c) 2018 Stichting Yona Foundation
- *
- * This Source Code Form is subject to the terms of the Mozilla Public
- * License, v. 2.0. If a copy of the MPL was not distributed with this
- * file, You can obtain one at https://mozilla.org/MPL/2.0/.
- */
-
-package com.yona.plugin.services.api.db;
-
-import org.codehaus.jackson.map.DeserializationConfig;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.map.SerializationConfig;
-
-/**
- * The type Json parser helper.
- */
-class JsonParserHelper
-{
-
-	private static ObjectMapper objectMapper;
-
-	/**
-	 * Gets object mapper.
-	 *
-	 * @return the object mapper
-	 */
-	public static synchronized ObjectMapper getObjectMapper()
-	{
-		if (objectMapper == null)
-		{
-			objectMapper = new ObjectMapper();
-			objectMapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-			objectMapper.configure(SerializationConfig.Feature.FAIL_ON_EMPTY_BEANS, false);
-		}
-		return objectMapper;
-	}
-}
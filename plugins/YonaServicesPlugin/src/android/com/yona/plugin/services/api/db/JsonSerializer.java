@@ -10,11 +10,12 @@ package com.yona.plugin.services.api.db;
 
 import android.util.Log;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.yona.plugin.services.api.json.JsonCodec;
 import com.yona.plugin.services.utils.Logger;
 
-import org.codehaus.jackson.map.ObjectMapper;
-
-import java.io.IOException;
+import java.nio.charset.Charset;
 
 /**
  * Created by kinnarvasa on 04/04/16.
@@ -23,15 +24,16 @@ public class JsonSerializer implements DbSerializer
 {
 
 	private static final String TAG = JsonSerializer.class.getCanonicalName();
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
 
-	private final ObjectMapper mapper;
+	private final Gson gson;
 
 	/**
 	 * Instantiates a new Json serializer.
 	 */
 	public JsonSerializer()
 	{
-		mapper = JsonParserHelper.getObjectMapper();
+		gson = JsonCodec.getGson();
 	}
 
 
@@ -40,9 +42,9 @@ public class JsonSerializer implements DbSerializer
 	{
 		try
 		{
-			return mapper.writeValueAsBytes(obj);
+			return gson.toJson(obj).getBytes(UTF_8);
 		}
-		catch (IOException e)
+		catch (JsonParseException e)
 		{
 			Logger.loge(JsonSerializer.class, e.getMessage());
 		}
@@ -54,9 +56,10 @@ public class JsonSerializer implements DbSerializer
 	{
 		try
 		{
-			return mapper.readValue(data, type);
+			// From a string, a reader would allocate its own buffers for every blob.
+			return gson.fromJson(new String(data, UTF_8), type);
 		}
-		catch (IOException e)
+		catch (JsonParseException e)
 		{
 			Log.e(TAG, "Failed to deserialize object!", e);
 		}
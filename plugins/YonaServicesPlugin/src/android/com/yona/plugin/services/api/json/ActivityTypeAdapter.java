@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.yona.plugin.services.api.model.Activity;
+
+import java.io.IOException;
+
+/**
+ * The type adapter of {@link Activity}.
+ */
+public class ActivityTypeAdapter extends TypeAdapter<Activity>
+{
+    @Override
+    public void write(JsonWriter out, Activity activity) throws IOException
+    {
+        if (activity == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("application").value(activity.getApplication());
+        out.name("startTime").value(activity.getStartTime());
+        out.name("endTime").value(activity.getEndTime());
+        out.endObject();
+    }
+
+    @Override
+    public Activity read(JsonReader in) throws IOException
+    {
+        if (JsonReaders.nextNull(in))
+        {
+            return null;
+        }
+        Activity activity = new Activity();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            switch (in.nextName())
+            {
+                case "application":
+                    activity.setApplication(JsonReaders.nextString(in));
+                    break;
+                case "startTime":
+                    activity.setStartTime(JsonReaders.nextString(in));
+                    break;
+                case "endTime":
+                    activity.setEndTime(JsonReaders.nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return activity;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.yona.plugin.services.api.model.Activity;
+import com.yona.plugin.services.api.model.AppActivity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The type adapter of {@link AppActivity}.
+ */
+public class AppActivityTypeAdapter extends TypeAdapter<AppActivity>
+{
+    private final ActivityTypeAdapter activityTypeAdapter;
+
+    /**
+     * Instantiates a new App activity type adapter.
+     *
+     * @param activityTypeAdapter the activity type adapter
+     */
+    public AppActivityTypeAdapter(ActivityTypeAdapter activityTypeAdapter)
+    {
+        this.activityTypeAdapter = activityTypeAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, AppActivity appActivity) throws IOException
+    {
+        if (appActivity == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("deviceDateTime").value(appActivity.getDeviceDateTime());
+        out.name("activities");
+        if (appActivity.getActivities() == null)
+        {
+            out.nullValue();
+        }
+        else
+        {
+            out.beginArray();
+            for (Activity activity : appActivity.getActivities())
+            {
+                activityTypeAdapter.write(out, activity);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public AppActivity read(JsonReader in) throws IOException
+    {
+        if (JsonReaders.nextNull(in))
+        {
+            return null;
+        }
+        AppActivity appActivity = new AppActivity();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            switch (in.nextName())
+            {
+                case "deviceDateTime":
+                    appActivity.setDeviceDateTime(JsonReaders.nextString(in));
+                    break;
+                case "activities":
+                    appActivity.setActivities(readActivities(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return appActivity;
+    }
+
+    private List<Activity> readActivities(JsonReader in) throws IOException
+    {
+        List<Activity> activities = new ArrayList<>();
+        if (JsonReaders.nextNull(in))
+        {
+            return activities;
+        }
+        in.beginArray();
+        while (in.hasNext())
+        {
+            activities.add(activityTypeAdapter.read(in));
+        }
+        in.endArray();
+        return activities;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.yona.plugin.services.api.model.Cury;
+
+import java.io.IOException;
+
+/**
+ * The type adapter of {@link Cury}.
+ */
+public class CuryTypeAdapter extends TypeAdapter<Cury>
+{
+    @Override
+    public void write(JsonWriter out, Cury cury) throws IOException
+    {
+        if (cury == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("name").value(cury.getName());
+        out.name("href").value(cury.getHref());
+        out.name("templated").value(cury.getTemplated());
+        out.endObject();
+    }
+
+    @Override
+    public Cury read(JsonReader in) throws IOException
+    {
+        if (JsonReaders.nextNull(in))
+        {
+            return null;
+        }
+        Cury cury = new Cury();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            switch (in.nextName())
+            {
+                case "name":
+                    cury.setName(JsonReaders.nextString(in));
+                    break;
+                case "href":
+                    cury.setHref(JsonReaders.nextString(in));
+                    break;
+                case "templated":
+                    cury.setTemplated(JsonReaders.nextBoolean(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return cury;
+    }
+}
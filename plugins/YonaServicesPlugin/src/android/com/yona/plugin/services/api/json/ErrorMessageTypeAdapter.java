@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.yona.plugin.services.api.model.ErrorMessage;
+
+import java.io.IOException;
+
+/**
+ * The type adapter of {@link ErrorMessage}. The http status is not part of the body and is not written.
+ */
+public class ErrorMessageTypeAdapter extends TypeAdapter<ErrorMessage>
+{
+    @Override
+    public void write(JsonWriter out, ErrorMessage errorMessage) throws IOException
+    {
+        if (errorMessage == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("message").value(errorMessage.getMessage());
+        out.name("code").value(errorMessage.getCode());
+        out.endObject();
+    }
+
+    @Override
+    public ErrorMessage read(JsonReader in) throws IOException
+    {
+        if (JsonReaders.nextNull(in))
+        {
+            return null;
+        }
+        String message = null;
+        String code = null;
+        in.beginObject();
+        while (in.hasNext())
+        {
+            switch (in.nextName())
+            {
+                case "message":
+                    message = JsonReaders.nextString(in);
+                    break;
+                case "code":
+                    code = JsonReaders.nextString(in);
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new ErrorMessage(message, code);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.yona.plugin.services.api.model.Href;
+
+import java.io.IOException;
+
+/**
+ * The type adapter of {@link Href}.
+ */
+public class HrefTypeAdapter extends TypeAdapter<Href>
+{
+    @Override
+    public void write(JsonWriter out, Href href) throws IOException
+    {
+        if (href == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("href").value(href.getHref());
+        out.endObject();
+    }
+
+    @Override
+    public Href read(JsonReader in) throws IOException
+    {
+        if (JsonReaders.nextNull(in))
+        {
+            return null;
+        }
+        Href href = new Href();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            if ("href".equals(in.nextName()))
+            {
+                href.setHref(JsonReaders.nextString(in));
+            }
+            else
+            {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return href;
+    }
+}
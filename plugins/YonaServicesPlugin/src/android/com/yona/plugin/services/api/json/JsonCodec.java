@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.yona.plugin.services.api.model.Activity;
+import com.yona.plugin.services.api.model.AppActivity;
+import com.yona.plugin.services.api.model.Cury;
+import com.yona.plugin.services.api.model.ErrorMessage;
+import com.yona.plugin.services.api.model.Href;
+import com.yona.plugin.services.api.model.Links;
+import com.yona.plugin.services.api.model.User;
+
+/**
+ * The single JSON codec of the plugin, used for the requests and responses of the server as well as for the
+ * objects stored in the database. The models the plugin exchanges are handled by hand-written type adapters,
+ * so they are read and written without reflection and without building a reflective adapter on first use.
+ */
+public final class JsonCodec
+{
+    private static Gson gson;
+
+    private JsonCodec()
+    {
+
+    }
+
+    /**
+     * Gets gson.
+     *
+     * @return the gson with the type adapters of the models registered
+     */
+    public static synchronized Gson getGson()
+    {
+        if (gson == null)
+        {
+            HrefTypeAdapter hrefTypeAdapter = new HrefTypeAdapter();
+            CuryTypeAdapter curyTypeAdapter = new CuryTypeAdapter();
+            LinksTypeAdapter linksTypeAdapter = new LinksTypeAdapter(hrefTypeAdapter, curyTypeAdapter);
+            ActivityTypeAdapter activityTypeAdapter = new ActivityTypeAdapter();
+            gson = new GsonBuilder()
+                    .registerTypeAdapter(Href.class, hrefTypeAdapter)
+                    .registerTypeAdapter(Cury.class, curyTypeAdapter)
+                    .registerTypeAdapter(Links.class, linksTypeAdapter)
+                    .registerTypeAdapter(User.class, new UserTypeAdapter(linksTypeAdapter))
+                    .registerTypeAdapter(Activity.class, activityTypeAdapter)
+                    .registerTypeAdapter(AppActivity.class, new AppActivityTypeAdapter(activityTypeAdapter))
+                    .registerTypeAdapter(ErrorMessage.class, new ErrorMessageTypeAdapter())
+                    .create();
+        }
+        return gson;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Helpers for the type adapters, reading values that may be null.
+ */
+final class JsonReaders
+{
+    private JsonReaders()
+    {
+
+    }
+
+    /**
+     * Reads a null, returning whether there was one.
+     *
+     * @param in the reader
+     * @return true if the next value was null and has been consumed
+     * @throws IOException the io exception
+     */
+    static boolean nextNull(JsonReader in) throws IOException
+    {
+        if (in.peek() == JsonToken.NULL)
+        {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads a string that may be null.
+     *
+     * @param in the reader
+     * @return the string, or null
+     * @throws IOException the io exception
+     */
+    static String nextString(JsonReader in) throws IOException
+    {
+        return nextNull(in) ? null : in.nextString();
+    }
+
+    /**
+     * Reads a boolean that may be null.
+     *
+     * @param in the reader
+     * @return the boolean, or null
+     * @throws IOException the io exception
+     */
+    static Boolean nextBoolean(JsonReader in) throws IOException
+    {
+        return nextNull(in) ? null : in.nextBoolean();
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.yona.plugin.services.api.model.Cury;
+import com.yona.plugin.services.api.model.Href;
+import com.yona.plugin.services.api.model.Links;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The type adapter of {@link Links}. Links are written with their HAL relation names. Besides those, the
+ * property names Jackson used for the user blobs stored by the previous app are read, so those blobs still load.
+ */
+public class LinksTypeAdapter extends TypeAdapter<Links>
+{
+    private final HrefTypeAdapter hrefTypeAdapter;
+    private final CuryTypeAdapter curyTypeAdapter;
+
+    /**
+     * Instantiates a new Links type adapter.
+     *
+     * @param hrefTypeAdapter the href type adapter
+     * @param curyTypeAdapter the cury type adapter
+     */
+    public LinksTypeAdapter(HrefTypeAdapter hrefTypeAdapter, CuryTypeAdapter curyTypeAdapter)
+    {
+        this.hrefTypeAdapter = hrefTypeAdapter;
+        this.curyTypeAdapter = curyTypeAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Links links) throws IOException
+    {
+        if (links == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeHref(out, "self", links.getSelf());
+        writeHref(out, "edit", links.getEdit());
+        writeHref(out, "yona:activityCategory", links.getYonaActivityCategory());
+        writeHref(out, "yona:postOpenAppEvent", links.getYonaPostOpenAppEvent());
+        writeHref(out, "yona:messages", links.getYonaMessages());
+        writeHref(out, "yona:dailyActivityReports", links.getYonaDailyActivityReports());
+        writeHref(out, "yona:weeklyActivityReports", links.getYonaWeeklyActivityReports());
+        writeHref(out, "yona:newDeviceRequest", links.getYonaNewDeviceRequest());
+        writeHref(out, "yona:process", links.getYonaPreocess());
+        writeHref(out, "yona:appActivity", links.getYonaAppActivity());
+        out.name("curies");
+        if (links.getCuries() == null)
+        {
+            out.nullValue();
+        }
+        else
+        {
+            out.beginArray();
+            for (Cury cury : links.getCuries())
+            {
+                curyTypeAdapter.write(out, cury);
+            }
+            out.endArray();
+        }
+        writeHref(out, "yona:confirmMobileNumber", links.getYonaConfirmMobileNumber());
+        writeHref(out, "yona:resendMobileNumberConfirmationCode", links.getResendMobileNumberConfirmationCode());
+        writeHref(out, "yona:requestPinReset", links.getRequestPinReset());
+        writeHref(out, "yona:dailyActivityReportsWithBuddies", links.getDailyActivityReportsWithBuddies());
+        writeHref(out, "yona:resendPinResetConfirmationCode", links.getResendPinResetConfirmationCode());
+        writeHref(out, "yona:clearPinReset", links.getClearPinReset());
+        writeHref(out, "yona:verifyPinReset", links.getVerifyPinReset());
+        writeHref(out, "yona:user", links.getYonaUser());
+        writeHref(out, "yona:reject", links.getYonaReject());
+        writeHref(out, "yona:accept", links.getYonaAccept());
+        writeHref(out, "yona:goal", links.getYonaGoal());
+        writeHref(out, "yona:dayDetails", links.getYonaDayDetails());
+        writeHref(out, "next", links.getNext());
+        writeHref(out, "prev", links.getPrev());
+        writeHref(out, "first", links.getFirst());
+        writeHref(out, "last", links.getLast());
+        writeHref(out, "yona:weekDetails", links.getWeekDetails());
+        writeHref(out, "yona:buddy", links.getYonaBuddy());
+        writeHref(out, "yona:addComment", links.getAddComment());
+        writeHref(out, "yona:reply", links.getReplyComment());
+        writeHref(out, "yona:ovpnProfile", links.getOvpnProfile());
+        writeHref(out, "yona:sslRootCert", links.getSslRootCert());
+        writeHref(out, "yona:markRead", links.getMarkRead());
+        writeHref(out, "yona:markUnread", links.getMarkUnRead());
+        writeHref(out, "yona:repliedMessage", links.getRepliedMessage());
+        writeHref(out, "yona:editUserPhoto", links.getEditUserPhoto());
+        writeHref(out, "yona:userPhoto", links.getUserPhoto());
+        out.endObject();
+    }
+
+    private void writeHref(JsonWriter out, String name, Href href) throws IOException
+    {
+        // Absent links are left out rather than written as null.
+        if (href != null)
+        {
+            out.name(name);
+            hrefTypeAdapter.write(out, href);
+        }
+    }
+
+    @Override
+    public Links read(JsonReader in) throws IOException
+    {
+        if (JsonReaders.nextNull(in))
+        {
+            return null;
+        }
+        Links links = new Links();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            switch (in.nextName())
+            {
+                case "self":
+                    links.setSelf(hrefTypeAdapter.read(in));
+                    break;
+                case "edit":
+                    links.setEdit(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:activityCategory":
+                case "yonaActivityCategory":
+                    links.setYonaActivityCategory(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:postOpenAppEvent":
+                case "yonaPostOpenAppEvent":
+                    links.setYonaPostOpenAppEvent(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:messages":
+                case "yonaMessages":
+                    links.setYonaMessages(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:dailyActivityReports":
+                case "yonaDailyActivityReports":
+                    links.setYonaDailyActivityReports(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:weeklyActivityReports":
+                case "yonaWeeklyActivityReports":
+                    links.setYonaWeeklyActivityReports(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:newDeviceRequest":
+                case "yonaNewDeviceRequest":
+                    links.setYonaNewDeviceRequest(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:process":
+                case "yonaPreocess":
+                    links.setYonaPreocess(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:appActivity":
+                case "yonaAppActivity":
+                    links.setYonaAppActivity(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:confirmMobileNumber":
+                case "yonaConfirmMobileNumber":
+                    links.setYonaConfirmMobileNumber(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:resendMobileNumberConfirmationCode":
+                case "resendMobileNumberConfirmationCode":
+                    links.setResendMobileNumberConfirmationCode(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:requestPinReset":
+                case "requestPinReset":
+                    links.setRequestPinReset(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:dailyActivityReportsWithBuddies":
+                case "dailyActivityReportsWithBuddies":
+                    links.setDailyActivityReportsWithBuddies(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:resendPinResetConfirmationCode":
+                case "resendPinResetConfirmationCode":
+                    links.setResendPinResetConfirmationCode(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:clearPinReset":
+                case "clearPinReset":
+                    links.setClearPinReset(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:verifyPinReset":
+                case "verifyPinReset":
+                    links.setVerifyPinReset(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:user":
+                case "yonaUser":
+                    links.setYonaUser(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:reject":
+                case "yonaReject":
+                    links.setYonaReject(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:accept":
+                case "yonaAccept":
+                    links.setYonaAccept(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:goal":
+                case "yonaGoal":
+                    links.setYonaGoal(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:dayDetails":
+                case "yonaDayDetails":
+                    links.setYonaDayDetails(hrefTypeAdapter.read(in));
+                    break;
+                case "next":
+                    links.setNext(hrefTypeAdapter.read(in));
+                    break;
+                case "prev":
+                    links.setPrev(hrefTypeAdapter.read(in));
+                    break;
+                case "first":
+                    links.setFirst(hrefTypeAdapter.read(in));
+                    break;
+                case "last":
+                    links.setLast(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:weekDetails":
+                case "weekDetails":
+                    links.setWeekDetails(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:buddy":
+                case "yonaBuddy":
+                    links.setYonaBuddy(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:addComment":
+                case "addComment":
+                    links.setAddComment(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:reply":
+                case "replyComment":
+                    links.setReplyComment(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:ovpnProfile":
+                case "ovpnProfile":
+                    links.setOvpnProfile(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:sslRootCert":
+                case "sslRootCert":
+                    links.setSslRootCert(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:markRead":
+                case "markRead":
+                    links.setMarkRead(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:markUnread":
+                case "markUnRead":
+                    links.setMarkUnRead(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:repliedMessage":
+                case "repliedMessage":
+                    links.setRepliedMessage(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:editUserPhoto":
+                case "editUserPhoto":
+                    links.setEditUserPhoto(hrefTypeAdapter.read(in));
+                    break;
+                case "yona:userPhoto":
+                case "userPhoto":
+                    links.setUserPhoto(hrefTypeAdapter.read(in));
+                    break;
+                case "curies":
+                    links.setCuries(readCuries(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return links;
+    }
+
+    private List<Cury> readCuries(JsonReader in) throws IOException
+    {
+        List<Cury> curies = new ArrayList<>();
+        if (JsonReaders.nextNull(in))
+        {
+            return curies;
+        }
+        in.beginArray();
+        while (in.hasNext())
+        {
+            curies.add(curyTypeAdapter.read(in));
+        }
+        in.endArray();
+        return curies;
+    }
+}
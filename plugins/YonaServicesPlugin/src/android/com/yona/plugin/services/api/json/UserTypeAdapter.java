@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.yona.plugin.services.api.model.User;
+import com.yona.plugin.services.enums.UserStatus;
+import com.yona.plugin.services.utils.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The type adapter of {@link User}. Besides "_links", the "links" property that Jackson wrote for the
+ * user blobs stored by the previous app is read. Derived properties of those blobs, like "active", are skipped.
+ */
+public class UserTypeAdapter extends TypeAdapter<User>
+{
+    private final LinksTypeAdapter linksTypeAdapter;
+
+    /**
+     * Instantiates a new User type adapter.
+     *
+     * @param linksTypeAdapter the links type adapter
+     */
+    public UserTypeAdapter(LinksTypeAdapter linksTypeAdapter)
+    {
+        this.linksTypeAdapter = linksTypeAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, User user) throws IOException
+    {
+        if (user == null)
+        {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (user.getLinks() != null)
+        {
+            out.name("_links");
+            linksTypeAdapter.write(out, user.getLinks());
+        }
+        out.name("firstName").value(user.getFirstName());
+        out.name("lastName").value(user.getLastName());
+        out.name("mobileNumber").value(user.getMobileNumber());
+        out.name("nickname").value(user.getNickname());
+        if (user.getDevices() != null)
+        {
+            out.name("devices").beginArray();
+            for (String device : user.getDevices())
+            {
+                out.value(device);
+            }
+            out.endArray();
+        }
+        out.name("mobileNumberConfirmationCode").value(user.getMobileNumberConfirmationCode());
+        out.name("status").value(user.getStatus() == null ? null : user.getStatus().name());
+        out.name("version").value(user.getVersion());
+        out.endObject();
+    }
+
+    @Override
+    public User read(JsonReader in) throws IOException
+    {
+        if (JsonReaders.nextNull(in))
+        {
+            return null;
+        }
+        User user = new User();
+        in.beginObject();
+        while (in.hasNext())
+        {
+            switch (in.nextName())
+            {
+                case "_links":
+                case "links":
+                    user.setLinks(linksTypeAdapter.read(in));
+                    break;
+                case "firstName":
+                    user.setFirstName(JsonReaders.nextString(in));
+                    break;
+                case "lastName":
+                    user.setLastName(JsonReaders.nextString(in));
+                    break;
+                case "mobileNumber":
+                    user.setMobileNumber(JsonReaders.nextString(in));
+                    break;
+                case "nickname":
+                    user.setNickname(JsonReaders.nextString(in));
+                    break;
+                case "devices":
+                    user.setDevices(readStrings(in));
+                    break;
+                case "mobileNumberConfirmationCode":
+                    user.setMobileNumberConfirmationCode(JsonReaders.nextString(in));
+                    break;
+                case "status":
+                    user.setStatus(readStatus(in));
+                    break;
+                case "version":
+                    user.setVersion(JsonReaders.nextNull(in) ? 0 : in.nextInt());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return user;
+    }
+
+    private static List<String> readStrings(JsonReader in) throws IOException
+    {
+        List<String> strings = new ArrayList<>();
+        if (JsonReaders.nextNull(in))
+        {
+            return strings;
+        }
+        in.beginArray();
+        while (in.hasNext())
+        {
+            strings.add(JsonReaders.nextString(in));
+        }
+        in.endArray();
+        return strings;
+    }
+
+    private static UserStatus readStatus(JsonReader in) throws IOException
+    {
+        String status = JsonReaders.nextString(in);
+        if (status == null)
+        {
+            return null;
+        }
+        try
+        {
+            return UserStatus.valueOf(status);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // A status added by a newer server, the user is treated as not active.
+            Logger.loge(UserTypeAdapter.class, "Unknown user status " + status);
+            return null;
+        }
+    }
+}
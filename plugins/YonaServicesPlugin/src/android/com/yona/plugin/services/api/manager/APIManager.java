@@ -14,7 +14,7 @@ public class APIManager {
      *
      * @return the instance
      */
-    public static APIManager getInstance()
+    public static synchronized APIManager getInstance()
     {
         if (apiManager == null)
         {
@@ -24,11 +24,12 @@ public class APIManager {
     }
 
     /**
-     * Gets activity manager.
+     * Gets activity manager. Synchronized, as the service and the receivers may ask for it from different
+     * threads, and a second activity manager would open the same activity store with an uploader of its own.
      *
      * @return the activity manager
      */
-    public ActivityManager getActivityManager(Context context)
+    public synchronized ActivityManager getActivityManager(Context context)
     {
         if (activityManager == null)
         {
@@ -43,7 +44,7 @@ public class APIManager {
      *
      * @param activityManager the activity manager
      */
-    public void setActivityManager(ActivityManager activityManager)
+    public synchronized void setActivityManager(ActivityManager activityManager)
     {
         this.activityManager = activityManager;
     }
@@ -8,21 +8,34 @@
 
 package com.yona.plugin.services.api.manager;
 
-import java.util.Date;
-
 public interface ActivityManager
 {
     /**
      * Post activity to db.
      *
-     * @param applicationName the application name
-     * @param startDate       the start date
-     * @param endDate         the end date
+     * @param applicationId the application id, see {@link com.yona.plugin.services.api.service.AppDictionary}
+     * @param startTime     the start time in milliseconds since the epoch
+     * @param endTime       the end time in milliseconds since the epoch
+     */
+    void postActivityToDB(int applicationId, long startTime, long endTime);
+
+    /**
+     * Write the buffered activities to the db.
+     */
+    void flushActivities();
+
+    /**
+     * Write the buffered activities to the db if they have been buffered for the flush interval.
      */
-    void postActivityToDB(String applicationName, Date startDate, Date endDate);
+    void flushDueActivities();
 
     /**
-     * Post all db activities.
+     * Post all db activities. Returns right away, the buffered activities are flushed and uploaded in the background.
      */
     void postAllDBActivities();
+
+    /**
+     * To be called when the device starts charging, which may trigger an upload.
+     */
+    void onChargingStarted();
 }
@@ -9,98 +9,216 @@
 package com.yona.plugin.services.api.manager.dao;
 
 import android.database.Cursor;
-import android.database.sqlite.SQLiteOpenHelper;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteStatement;
 
 import com.yona.plugin.services.api.db.DBConstant;
-import com.yona.plugin.services.api.model.Activity;
+import com.yona.plugin.services.api.db.DatabaseHelper;
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
 import com.yona.plugin.services.utils.Logger;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class ActivityTrackerDAO extends BaseDAO
 {
+    private static final String DELETE_ACTIVITY = "DELETE FROM " + DBConstant.TBL_ACTIVITY_TRACKER
+            + " WHERE " + DBConstant.APPLICATION_ID + " = ? AND " + DBConstant.APPLICATION_START_TIME + " = ?";
+    private static final String INSERT_ACTIVITY = "INSERT INTO " + DBConstant.TBL_ACTIVITY_TRACKER
+            + "(" + DBConstant.APPLICATION_ID + "," + DBConstant.APPLICATION_START_TIME + "," + DBConstant.APPLICATION_END_TIME + ") VALUES (?,?,?)";
+
+    // The number of stored activities, counted once and then kept up to date as writes commit; -1 until it is
+    // counted. Only changed on the writer thread.
+    private volatile long activityCount = -1;
 
     /**
      * Instantiates a new Base dao.
      *
      * @param mOpenHelper the m open helper
      */
-    public ActivityTrackerDAO(SQLiteOpenHelper mOpenHelper)
+    public ActivityTrackerDAO(DatabaseHelper mOpenHelper)
     {
         super(mOpenHelper);
+        if (writer != null)
+        {
+            // Queued, so the saves queued later are counted on top of it.
+            writer.submit(db ->
+            {
+                long count = DatabaseUtils.queryNumEntries(db, DBConstant.TBL_ACTIVITY_TRACKER);
+                writer.onCommit(() -> activityCount = count);
+                return null;
+            });
+        }
     }
 
     /**
-     * Save activities.
+     * Queues saving activities in a single transaction, without waiting for the commit. An activity with
+     * the same application and start time replaces the stored one, and gets a new id.
+     * The activities are inserted with compiled statements, binding their fields directly.
      *
-     * @param activity the activity
+     * @param activities the activities
+     */
+    public void saveActivities(List<ActivityRecord> activities)
+    {
+        int size = activities.size();
+        // Copied now, so the caller can reuse its records once this returns.
+        int[] applicationIds = new int[size];
+        long[] startTimes = new long[size];
+        long[] endTimes = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            ActivityRecord activity = activities.get(i);
+            applicationIds[i] = activity.getApplicationId();
+            startTimes[i] = activity.getStartTime();
+            endTimes[i] = activity.getEndTime();
+        }
+        writer.submit(db ->
+        {
+            SQLiteStatement delete = writer.getStatement(db, DELETE_ACTIVITY);
+            SQLiteStatement insert = writer.getStatement(db, INSERT_ACTIVITY);
+            int replaced = 0;
+            for (int i = 0; i < size; i++)
+            {
+                // Deleted first rather than with INSERT OR REPLACE, which does not tell whether it replaced a row.
+                delete.bindLong(1, applicationIds[i]);
+                delete.bindLong(2, startTimes[i]);
+                replaced += delete.executeUpdateDelete();
+                insert.bindLong(1, applicationIds[i]);
+                insert.bindLong(2, startTimes[i]);
+                insert.bindLong(3, endTimes[i]);
+                insert.executeInsert();
+            }
+            addToActivityCount(size - replaced);
+            return null;
+        });
+        Logger.logi(ActivityTrackerDAO.class, "Activities queued : " + size);
+    }
+
+    /**
+     * Waits until the activities saved before are committed, so they can be read.
      */
-    public void saveActivities(Activity activity)
+    public void awaitWrites()
     {
-        insert(DBConstant.TBL_ACTIVITY_TRACKER, activity.getDbContentValues());
-        Logger.logi(ActivityTrackerDAO.class, "Activity inserted : " + activity.getDbContentValues().toString());
+        flushWrites();
     }
 
     /**
-     * Gets activities.
+     * Gets the next batch of activities, in order of their id.
      *
-     * @return the activities
+     * @param afterId only activities with a larger id are included
+     * @param limit   the maximum number of activities
+     * @return the batch, or null if there are no more activities
      */
-    public List<Activity> getActivities()
+    public ActivityBatch getNextBatch(long afterId, int limit)
     {
-        List<Activity> activityList = new ArrayList<>();
-        logTotalActivityCount();
-        Cursor c = query(DBConstant.TBL_ACTIVITY_TRACKER, DBConstant.APPLICATION_NAME + " DESC", DBConstant.ACTIVITY_FETCH_ROW_LIMIT);
+        Cursor c = rawQuery("SELECT COUNT(*), MIN(" + DBConstant.ACTIVITY_ID + "), MAX(" + DBConstant.ACTIVITY_ID + "), TOTAL(LENGTH(" + DBConstant.PACKAGE_NAME + "))"
+                + " FROM (" + getActivitiesQuery(DBConstant.ACTIVITY_ID + " > " + afterId) + " LIMIT " + limit + ")", null);
+        if (c == null)
+        {
+            return null;
+        }
         try
         {
-            if (c != null && c.getCount() > 0)
+            if (!c.moveToFirst() || c.getInt(0) == 0)
             {
-                c.moveToFirst();
-                do
-                {
-                    Activity activity = new Activity(c);
-                    if (!activity.getApplication().equals("NULL"))
-                    {
-                        activityList.add(activity);
-                    }
-                } while (c.moveToNext());
+                return null;
             }
-        }
-        catch (Exception e)
-        {
-            Logger.loge(ActivityTrackerDAO.class, e.getMessage());
+            return new ActivityBatch(c.getLong(1), c.getLong(2), c.getInt(0), c.getLong(3));
         }
         finally
         {
-            if (c != null)
-            {
-                c.close();
-            }
+            c.close();
         }
-        return activityList;
     }
 
+    /**
+     * Queries the activities of a batch, in order of their id. The columns are the id, the package name,
+     * the start time and the end time.
+     *
+     * @param firstId the id of the first activity
+     * @param lastId  the id of the last activity
+     * @return the cursor, to be closed by the caller
+     */
+    public Cursor queryActivities(long firstId, long lastId)
+    {
+        return rawQuery(getActivitiesQuery(DBConstant.ACTIVITY_ID + " BETWEEN " + firstId + " AND " + lastId), null);
+    }
+
+    private static String getActivitiesQuery(String idCondition)
+    {
+        // Resolve the package names in the same query, the rows themselves only store the app id.
+        return "SELECT t." + DBConstant.ACTIVITY_ID + " AS " + DBConstant.ACTIVITY_ID
+                + ", a." + DBConstant.PACKAGE_NAME + " AS " + DBConstant.PACKAGE_NAME
+                + ", t." + DBConstant.APPLICATION_START_TIME
+                + ", t." + DBConstant.APPLICATION_END_TIME
+                + " FROM " + DBConstant.TBL_ACTIVITY_TRACKER + " t JOIN " + DBConstant.TBL_APPS + " a"
+                + " ON a." + DBConstant.APP_ID + " = t." + DBConstant.APPLICATION_ID
+                + " WHERE t." + idCondition
+                + " ORDER BY t." + DBConstant.ACTIVITY_ID;
+    }
 
     /**
-     * Clear activities.
+     * Clear the activities of an acknowledged batch.
+     *
+     * @param firstId the id of the first activity of the batch
+     * @param lastId  the id of the last activity of the batch
      */
-    public void clearActivities()
+    public void clearActivities(long firstId, long lastId)
     {
-        delete(DBConstant.TBL_ACTIVITY_TRACKER,
-                DBConstant.APPLICATION_START_TIME +
-                        " IN (SELECT " + DBConstant.APPLICATION_START_TIME +
-                        " from " + DBConstant.TBL_ACTIVITY_TRACKER +
-                        " ORDER BY " + DBConstant.APPLICATION_NAME + " DESC LIMIT " + DBConstant.ACTIVITY_FETCH_ROW_LIMIT + ")",
-                null);
-        logTotalActivityCount();
+        // Waits for the delete, so an upload that starts over does not read the acknowledged rows again.
+        writer.execute(db ->
+        {
+            int deleted = db.delete(DBConstant.TBL_ACTIVITY_TRACKER, DBConstant.ACTIVITY_ID + " BETWEEN ? AND ?",
+                    new String[]{String.valueOf(firstId), String.valueOf(lastId)});
+            addToActivityCount(-deleted);
+            return null;
+        });
+        Logger.logi(ActivityTrackerDAO.class, "Activities cleared : " + firstId + " - " + lastId);
+    }
+
+    /**
+     * Gets activity count. Does not query the table, unless the stored activities are not counted yet.
+     *
+     * @return the number of stored activities, including the saves that are committed but not the queued ones
+     */
+    public long getActivityCount()
+    {
+        long count = activityCount;
+        return count >= 0 ? count : count(DBConstant.TBL_ACTIVITY_TRACKER);
+    }
+
+    private void addToActivityCount(long delta)
+    {
+        writer.onCommit(() ->
+        {
+            if (activityCount >= 0)
+            {
+                activityCount += delta;
+            }
+        });
     }
 
-    public void logTotalActivityCount()
+    /**
+     * Gets the end time of the oldest stored activity.
+     *
+     * @return the end time in milliseconds since the epoch, or 0 if no activities are stored
+     */
+    public long getOldestActivityEndTime()
     {
-        Cursor c = query(DBConstant.TBL_ACTIVITY_TRACKER);
-        Logger.logi(ActivityTrackerDAO.class, "Activity count " + c.getCount());
-        c.close();
+        Cursor c = rawQuery("SELECT " + DBConstant.APPLICATION_END_TIME + " FROM " + DBConstant.TBL_ACTIVITY_TRACKER
+                + " ORDER BY " + DBConstant.ACTIVITY_ID + " LIMIT 1", null);
+        if (c == null)
+        {
+            return 0;
+        }
+        try
+        {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+        finally
+        {
+            c.close();
+        }
     }
 
 }
\ No newline at end of file
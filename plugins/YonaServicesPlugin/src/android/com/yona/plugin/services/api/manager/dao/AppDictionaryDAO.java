@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.dao;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.SparseArray;
+
+import com.yona.plugin.services.api.db.DBConstant;
+import com.yona.plugin.services.api.db.DatabaseHelper;
+
+/**
+ * Stores the package names referenced by activity rows, see {@link com.yona.plugin.services.api.service.AppDictionary}.
+ */
+public class AppDictionaryDAO extends BaseDAO
+{
+    /**
+     * Instantiates a new App dictionary dao.
+     *
+     * @param context the context
+     */
+    public AppDictionaryDAO(Context context)
+    {
+        super(DatabaseHelper.getInstance(context));
+    }
+
+    /**
+     * Gets all apps.
+     *
+     * @return the package names by id
+     */
+    public SparseArray<String> getApps()
+    {
+        SparseArray<String> apps = new SparseArray<>();
+        Cursor c = query(DBConstant.TBL_APPS);
+        if (c == null)
+        {
+            return apps;
+        }
+        try
+        {
+            int idColumn = c.getColumnIndex(DBConstant.APP_ID);
+            int packageNameColumn = c.getColumnIndex(DBConstant.PACKAGE_NAME);
+            while (c.moveToNext())
+            {
+                apps.put(c.getInt(idColumn), c.getString(packageNameColumn));
+            }
+        }
+        finally
+        {
+            c.close();
+        }
+        return apps;
+    }
+
+    /**
+     * Saves an app.
+     *
+     * @param packageName the package name
+     * @return the id of the app, which is the existing id if the package name was already stored
+     */
+    public int saveApp(String packageName)
+    {
+        ContentValues values = new ContentValues();
+        values.put(DBConstant.PACKAGE_NAME, packageName);
+        // Activities of the app are queued after this write, so the app is always stored before them.
+        return writer.execute(db ->
+        {
+            long id = db.insertWithOnConflict(DBConstant.TBL_APPS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            if (id != -1)
+            {
+                return (int) id;
+            }
+            Cursor c = db.query(DBConstant.TBL_APPS, new String[]{DBConstant.APP_ID},
+                    DBConstant.PACKAGE_NAME + " = ?", new String[]{packageName}, null, null, null);
+            try
+            {
+                if (c.moveToFirst())
+                {
+                    return c.getInt(0);
+                }
+                throw new IllegalStateException("Could not store app " + packageName);
+            }
+            finally
+            {
+                c.close();
+            }
+        });
+    }
+}
@@ -10,16 +10,13 @@ package com.yona.plugin.services.api.manager.dao;
 
 import android.content.ContentValues;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteOpenHelper;
 
-import java.util.List;
-
+import com.yona.plugin.services.api.db.DatabaseHelper;
+import com.yona.plugin.services.api.db.DatabaseWriter;
 import com.yona.plugin.services.api.db.DbSerializer;
 import com.yona.plugin.services.api.db.JsonSerializer;
-import com.yona.plugin.services.api.model.BaseEntity;
-import com.yona.plugin.services.listener.DataLoader;
-import com.yona.plugin.services.utils.Logger;
 
 /**
  * Author @MobiquityInc
@@ -32,15 +29,20 @@ class BaseDAO
      */
     final DbSerializer serializer = new JsonSerializer();
     private final SQLiteOpenHelper mOpenHelper;
+    /**
+     * The writer, all writes go through it so they are run on one thread.
+     */
+    final DatabaseWriter writer;
 
     /**
      * Instantiates a new Base dao.
      *
      * @param mOpenHelper the m open helper
      */
-    BaseDAO(SQLiteOpenHelper mOpenHelper)
+    BaseDAO(DatabaseHelper mOpenHelper)
     {
         this.mOpenHelper = mOpenHelper;
+        writer = mOpenHelper != null ? mOpenHelper.getWriter() : null;
     }
 
     /**
@@ -54,7 +56,7 @@ class BaseDAO
     {
         if (mOpenHelper != null)
         {
-            mOpenHelper.getWritableDatabase().delete(tableName, where, whereArgs);
+            writer.execute(db -> db.delete(tableName, where, whereArgs));
         }
     }
 
@@ -62,13 +64,18 @@ class BaseDAO
     /**
      * Delete.
      *
+     * @param query     the delete statement
      * @param whereArgs the where args
      */
     protected void delete(String query, String[] whereArgs)
     {
         if (mOpenHelper != null)
         {
-            mOpenHelper.getWritableDatabase().rawQuery(query, whereArgs);
+            writer.execute(db ->
+            {
+                db.execSQL(query, whereArgs);
+                return null;
+            });
         }
     }
 
@@ -84,11 +91,22 @@ class BaseDAO
     {
         if (mOpenHelper != null)
         {
-            return mOpenHelper.getWritableDatabase().insertOrThrow(tableName, null, initialValues);
+            return writer.execute(db -> db.insertOrThrow(tableName, null, initialValues));
         }
         return 0;
     }
 
+    /**
+     * Waits until the writes queued before are committed.
+     */
+    void flushWrites()
+    {
+        if (mOpenHelper != null)
+        {
+            writer.flush();
+        }
+    }
+
     /**
      * Update.
      *
@@ -101,7 +119,7 @@ class BaseDAO
     {
         if (mOpenHelper != null)
         {
-            mOpenHelper.getWritableDatabase().update(tableName, values, where, whereArgs);
+            writer.execute(db -> db.update(tableName, values, where, whereArgs));
         }
     }
 
@@ -138,36 +156,33 @@ class BaseDAO
     }
 
     /**
-     * Bulk insert.
+     * Counts the rows of a table without reading them.
      *
      * @param tableName the table name
-     * @param items     the items
+     * @return the number of rows
      */
-    protected void bulkInsert(final String tableName, final List<? extends BaseEntity> items)
+    long count(String tableName)
     {
-        try
+        if (mOpenHelper == null)
         {
-            new DataLoader()
-            {
-                @Override
-                public Object doDBCall()
-                {
-                    SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-                    db.beginTransaction();
-                    for (BaseEntity q : items)
-                    {
-                        db.insert(tableName, null, q.getDbContentValues());
-                    }
-                    db.setTransactionSuccessful();
-                    db.endTransaction();
-                    db.close();
-                    return null;
-                }
-            }.executeAsync();
+            return 0;
         }
-        catch (Exception e)
+        return DatabaseUtils.queryNumEntries(mOpenHelper.getWritableDatabase(), tableName);
+    }
+
+    /**
+     * Raw query cursor.
+     *
+     * @param sql           the query
+     * @param selectionArgs the selection args
+     * @return the cursor
+     */
+    Cursor rawQuery(String sql, String[] selectionArgs)
+    {
+        if (mOpenHelper == null)
         {
-            Logger.loge(BaseDAO.class, e.getMessage());
+            return null;
         }
+        return mOpenHelper.getWritableDatabase().rawQuery(sql, selectionArgs);
     }
-}
\ No newline at end of file
+}
@@ -11,32 +11,32 @@ package com.yona.plugin.services.api.manager.impl;
 import android.content.Context;
 import android.content.SharedPreferences;
 
-import com.yona.plugin.services.api.db.DatabaseHelper;
 import com.yona.plugin.services.api.manager.ActivityManager;
-import com.yona.plugin.services.api.manager.dao.ActivityTrackerDAO;
-import com.yona.plugin.services.api.model.Activity;
-import com.yona.plugin.services.api.model.AppActivity;
-import com.yona.plugin.services.api.model.ErrorMessage;
 import com.yona.plugin.services.api.manager.network.ActivityNetworkImpl;
-import com.yona.plugin.services.listener.DataLoadListenerImpl;
+import com.yona.plugin.services.api.service.SessionCoalescer;
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.api.store.ActivityStoreFactory;
+import com.yona.plugin.services.api.store.FileLogActivityStore;
+import com.yona.plugin.services.api.utils.ConnectivityMonitor;
+import com.yona.plugin.services.listener.ConnectivityListener;
 import com.yona.plugin.services.state.SharedPreference;
 import com.yona.plugin.services.utils.AppConstant;
-import com.yona.plugin.services.utils.DateUtility;
 import com.yona.plugin.services.utils.Logger;
 
-import java.util.Date;
-import java.util.List;
 import java.util.Set;
 
 
 /**
  * Created by kinnarvasa on 06/06/16.
  */
-public class ActivityManagerImpl implements ActivityManager
+public class ActivityManagerImpl implements ActivityManager, ConnectivityListener
 {
 
     private final ActivityNetworkImpl activityNetwork;
-    private final ActivityTrackerDAO activityTrackerDAO;
+    private final ActivityStore activityStore;
+    private final SessionCoalescer sessionCoalescer;
+    private final ActivityUploader activityUploader;
+    private final UploadTriggerPolicy uploadTriggerPolicy;
     private SharedPreference sharedPreferences;
 
 
@@ -48,19 +48,41 @@ public class ActivityManagerImpl implements ActivityManager
     public ActivityManagerImpl(Context context)
     {
         activityNetwork = new ActivityNetworkImpl(context);
-        activityTrackerDAO = new ActivityTrackerDAO(DatabaseHelper.getInstance(context));
         sharedPreferences = new SharedPreference(context);
+        activityStore = ActivityStoreFactory.open(context, sharedPreferences);
+        if (activityStore instanceof FileLogActivityStore)
+        {
+            // Appending to the log is a copy into memory that survives the process, sessions are only buffered
+            // while a next session can still be merged into them.
+            sessionCoalescer = new SessionCoalescer(activityStore, AppConstant.SESSION_MERGE_GAP, AppConstant.SESSION_MIN_DURATION,
+                    AppConstant.SESSION_FLUSH_SIZE, AppConstant.SESSION_MERGE_GAP);
+        }
+        else
+        {
+            sessionCoalescer = new SessionCoalescer(activityStore);
+        }
+        UploadRetryScheduler uploadRetryScheduler = new UploadRetryScheduler(context);
+        activityUploader = new ActivityUploader(activityStore, activityNetwork, sharedPreferences, AppConstant.UPLOAD_MAX_IN_FLIGHT,
+                new UploadBatchSizer(AppConstant.UPLOAD_BATCH_INITIAL_SIZE, AppConstant.UPLOAD_BATCH_MIN_SIZE, AppConstant.UPLOAD_BATCH_MAX_SIZE,
+                        AppConstant.UPLOAD_TARGET_LATENCY, AppConstant.UPLOAD_MAX_PAYLOAD_BYTES),
+                uploadRetryScheduler);
+        uploadTriggerPolicy = new UploadTriggerPolicy(activityStore, activityUploader, uploadRetryScheduler, this::postAllDBActivities,
+                AppConstant.UPLOAD_TRIGGER_PENDING_ROWS, AppConstant.UPLOAD_TRIGGER_MAX_AGE, AppConstant.UPLOAD_TRIGGER_MIN_INTERVAL);
+        ConnectivityMonitor.getInstance(context).addListener(this);
     }
 
     /**
-     * Save User app acvitiy to local db
+     * Save User app acvitiy to local db. Activities are buffered and written in batches.
      */
     @Override
-    public void postActivityToDB(String applicationName, Date startDate, Date endDate)
+    public void postActivityToDB(int applicationId, long startTime, long endTime)
     {
         try
         {
-            activityTrackerDAO.saveActivities(getAppActivity(applicationName, startDate, endDate));
+            if (sessionCoalescer.add(applicationId, startTime, endTime))
+            {
+                uploadTriggerPolicy.onActivitiesStored();
+            }
         }
         catch (Exception e)
         {
@@ -68,83 +90,50 @@ public class ActivityManagerImpl implements ActivityManager
         }
     }
 
-    /**
-     * App activity Business
-     */
-
     @Override
-    public void postAllDBActivities()
+    public void flushActivities()
     {
-        postAppActivitiesBatchWise();
+        sessionCoalescer.flush();
+        // Appends may be queued, wait for them so an upload reads the flushed sessions.
+        activityStore.flush();
     }
 
-    private void postAppActivitiesBatchWise()
-    { // recursive function posts until all activities are posted to the server .
-        List<Activity> activityList = activityTrackerDAO.getActivities();
-        if (activityList.isEmpty())
-        {
-            isSyncAPICallDone = true;
-            return;
-        }
-        AppActivity appActivity = new AppActivity();
-        appActivity.setDeviceDateTime(DateUtility.getLongFormatDate(new Date()));
-        appActivity.setActivities(activityList);
-        postActivityOnServerAndDoNextBatch(appActivity);
-    }
-
-    private boolean isSyncAPICallDone = true;
-
-    private void postActivityOnServerAndDoNextBatch(AppActivity activity)
+    @Override
+    public void flushDueActivities()
     {
-        if (!isSyncAPICallDone)
+        try
         {
-            return;
+            if (sessionCoalescer.flushIfDue())
+            {
+                uploadTriggerPolicy.onActivitiesStored();
+            }
         }
-
-        DataLoadListenerImpl dataLoadListenerImpl = new DataLoadListenerImpl<>((result) -> handlePostAppActivityOnSuccess(), (result) -> handlePostAppActivityOnFailure(result), null);
-        Logger.logi(ActivityManagerImpl.class, "post app activity: " + activity.toString());
-
-        String serverUrl = sharedPreferences.getServerUrl();
-        String appActivityUrl = sharedPreferences.getAppActivityUrl();
-        String yonaPassword = sharedPreferences.getYonaPassword();
-
-        if (serverUrl != null && appActivityUrl != null && yonaPassword != null) {
-            Logger.logi(ActivityManagerImpl.class, "appActivityUrl: " + appActivityUrl);
-
-            activityNetwork.postAppActivity(appActivityUrl, yonaPassword, activity, dataLoadListenerImpl);
+        catch (Exception e)
+        {
+            Logger.loge(ActivityManagerImpl.class, e.getMessage());
         }
     }
 
-    private Object handlePostAppActivityOnSuccess()
+    /**
+     * App activity Business
+     */
+
+    @Override
+    public void postAllDBActivities()
     {
-        activityTrackerDAO.clearActivities();
-        postAppActivitiesBatchWise();
-        return null; // Dummy return value, to allow use as data load handler
+        // Flushing waits for the queued writes, so it is done on the upload thread: callers include the main thread.
+        activityUploader.requestUpload(this::flushActivities);
     }
 
-    private Object handlePostAppActivityOnFailure(Object result)
+    @Override
+    public void onChargingStarted()
     {
-        String errorMessage;
-        if (result instanceof ErrorMessage)
-        {
-            errorMessage = ((ErrorMessage) result).getMessage();
-        }
-        else
-        {
-            errorMessage = (String) result;
-        }
-        Logger.loge(ActivityManagerImpl.class, new Exception("Failed to post app activity of device: " + errorMessage).getMessage());
-        return null; // Dummy return value, to allow use as data error handler
+        uploadTriggerPolicy.onChargingStarted();
     }
 
-    private Activity getAppActivity(String applicationName, Date startDate, Date endDate)
+    @Override
+    public void onConnectivityChanged(ConnectivityMonitor monitor, boolean restored)
     {
-        Activity activity = new Activity();
-        activity.setApplication(applicationName);
-        activity.setStartTime(DateUtility.getLongFormatDate(startDate));
-        activity.setEndTime(DateUtility.getLongFormatDate(endDate));
-        return activity;
+        uploadTriggerPolicy.onNetworkChanged(monitor.isOnline(), monitor.isMetered(), restored);
     }
-
-
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.impl;
+
+import android.os.SystemClock;
+
+import com.yona.plugin.services.api.manager.network.ActivityBatchRequestBody;
+import com.yona.plugin.services.api.manager.network.ActivityNetworkImpl;
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ErrorMessage;
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.enums.UploadState;
+import com.yona.plugin.services.listener.DataLoadListenerImpl;
+import com.yona.plugin.services.state.SharedPreference;
+import com.yona.plugin.services.utils.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Uploads the stored activities to the server, keeping several batches in flight.
+ * Batches are read in order of the row id with a cursor that moves past every batch that is posted,
+ * and a batch is only deleted, by its id range, once the server acknowledged it. A failed batch stops
+ * the upload, its rows stay stored and are posted again by the next upload, which the retry scheduler
+ * schedules. A batch that failed permanently is split in halves that are posted right away, until the
+ * single activities the server does not accept are found, which are dropped.
+ * All state is confined to a single thread, so uploads can be requested from any thread; a request
+ * during an upload makes the upload start over once it is done, to pick up the rows stored meanwhile.
+ */
+public class ActivityUploader
+{
+    // Estimated JSON size of an activity besides its package name: the field names and two timestamps.
+    private static final int ESTIMATED_ACTIVITY_BYTES = 100;
+
+    private final ActivityStore activityStore;
+    private final ActivityNetworkImpl activityNetwork;
+    private final SharedPreference sharedPreferences;
+    private final int maxInFlight;
+    private final UploadBatchSizer batchSizer;
+    private final UploadRetryScheduler retryScheduler;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private volatile UploadState state = UploadState.IDLE;
+    private boolean rerunRequested;
+    private long readCursor;
+    private int inFlight;
+    private long failedBatchId;
+    private long failedLastId;
+    private int failedRows;
+    private Object failure;
+    // The largest batch while a batch that failed permanently is split, 0 when not splitting.
+    private int splitSize;
+
+    /**
+     * Instantiates a new Activity uploader.
+     *
+     * @param activityStore      the activity store
+     * @param activityNetwork    the activity network
+     * @param sharedPreferences  the shared preferences holding the server url and credentials
+     * @param maxInFlight        the maximum number of batches posted concurrently
+     * @param batchSizer         the batch sizer
+     * @param retryScheduler     the retry scheduler
+     */
+    public ActivityUploader(ActivityStore activityStore, ActivityNetworkImpl activityNetwork, SharedPreference sharedPreferences, int maxInFlight,
+                            UploadBatchSizer batchSizer, UploadRetryScheduler retryScheduler)
+    {
+        this.activityStore = activityStore;
+        this.activityNetwork = activityNetwork;
+        this.sharedPreferences = sharedPreferences;
+        this.maxInFlight = maxInFlight;
+        this.batchSizer = batchSizer;
+        this.retryScheduler = retryScheduler;
+    }
+
+    /**
+     * Starts an upload, or makes the running upload start over once it is done.
+     */
+    public void requestUpload()
+    {
+        requestUpload(null);
+    }
+
+    /**
+     * Starts an upload, or makes the running upload start over once it is done, after running a preparation on
+     * the upload thread. The caller does not wait for the preparation.
+     *
+     * @param prepare the preparation, for example flushing the buffered activities, or null
+     */
+    public void requestUpload(Runnable prepare)
+    {
+        executor.execute(() ->
+        {
+            if (prepare != null)
+            {
+                try
+                {
+                    prepare.run();
+                }
+                catch (Exception e)
+                {
+                    Logger.loge(ActivityUploader.class, e.getMessage());
+                }
+            }
+            if (state == UploadState.IDLE)
+            {
+                start();
+            }
+            else
+            {
+                rerunRequested = true;
+            }
+        });
+    }
+
+    private void start()
+    {
+        state = UploadState.UPLOADING;
+        rerunRequested = false;
+        failure = null;
+        // Every run starts from the first stored row, which also picks up the rows of failed batches.
+        readCursor = 0;
+        postBatches();
+    }
+
+    private void postBatches()
+    {
+        String appActivityUrl = sharedPreferences.getAppActivityUrl();
+        String yonaPassword = sharedPreferences.getYonaPassword();
+        if (sharedPreferences.getServerUrl() == null || appActivityUrl == null || yonaPassword == null)
+        {
+            state = UploadState.STOPPING;
+        }
+        while (state == UploadState.UPLOADING && inFlight < maxInFlight)
+        {
+            int batchSize = splitSize > 0 ? Math.min(splitSize, batchSizer.getBatchSize()) : batchSizer.getBatchSize();
+            ActivityBatch batch = activityStore.readBatch(readCursor, batchSize);
+            if (batch == null)
+            {
+                break;
+            }
+            readCursor = batch.getLastId();
+            inFlight++;
+            postBatch(appActivityUrl, yonaPassword, batch);
+        }
+        if (inFlight == 0)
+        {
+            finish();
+        }
+    }
+
+    private void postBatch(String appActivityUrl, String yonaPassword, ActivityBatch batch)
+    {
+        long firstId = batch.getFirstId();
+        long lastId = batch.getLastId();
+        Logger.logi(ActivityUploader.class, "post app activity " + firstId + " - " + lastId);
+        int rows = batch.getSize();
+        long payloadBytes = batch.getPackageNameBytes() + (long) rows * ESTIMATED_ACTIVITY_BYTES;
+        long postedAt = SystemClock.elapsedRealtime();
+        DataLoadListenerImpl dataLoadListenerImpl = new DataLoadListenerImpl<>(
+                (result) -> handlePostAppActivityOnSuccess(firstId, lastId, rows, payloadBytes, SystemClock.elapsedRealtime() - postedAt),
+                (result) -> handlePostAppActivityOnFailure(firstId, lastId, rows, result),
+                null);
+        try
+        {
+            activityNetwork.postAppActivity(appActivityUrl, yonaPassword, new ActivityBatchRequestBody(activityStore, batch), dataLoadListenerImpl);
+        }
+        catch (Exception e)
+        {
+            handlePostAppActivityOnFailure(firstId, lastId, rows, e.getMessage());
+        }
+    }
+
+    private Object handlePostAppActivityOnSuccess(long firstId, long lastId, int rows, long payloadBytes, long latency)
+    {
+        executor.execute(() ->
+        {
+            inFlight--;
+            batchSizer.onSuccess(rows, payloadBytes, latency);
+            try
+            {
+                activityStore.ack(firstId, lastId);
+            }
+            catch (Exception e)
+            {
+                // The batch is posted again by the next upload.
+                Logger.loge(ActivityUploader.class, e.getMessage());
+            }
+            postBatches();
+        });
+        return null; // Dummy return value, to allow use as data load handler
+    }
+
+    private Object handlePostAppActivityOnFailure(long firstId, long lastId, int rows, Object result)
+    {
+        String errorMessage;
+        if (result instanceof ErrorMessage)
+        {
+            errorMessage = ((ErrorMessage) result).getMessage();
+        }
+        else
+        {
+            errorMessage = (String) result;
+        }
+        Logger.loge(ActivityUploader.class, new Exception("Failed to post app activity of device: " + errorMessage).getMessage());
+        executor.execute(() ->
+        {
+            inFlight--;
+            batchSizer.onFailure();
+            if (failure == null || firstId < failedBatchId)
+            {
+                // Retries are counted for the oldest batch that failed.
+                failedBatchId = firstId;
+                failedLastId = lastId;
+                failedRows = rows;
+                failure = result;
+            }
+            state = UploadState.STOPPING;
+            postBatches();
+        });
+        return null; // Dummy return value, to allow use as data error handler
+    }
+
+    private void finish()
+    {
+        state = UploadState.IDLE;
+        if (failure != null)
+        {
+            if (retryScheduler.onUploadFailed(failedBatchId, failure))
+            {
+                splitFailedBatch();
+            }
+        }
+        else
+        {
+            splitSize = 0;
+            retryScheduler.onUploadSucceeded();
+        }
+        if (rerunRequested)
+        {
+            start();
+        }
+    }
+
+    private void splitFailedBatch()
+    {
+        if (failedRows > 1)
+        {
+            // The activities around the ones the server does not accept are still posted.
+            splitSize = (failedRows + 1) / 2;
+            Logger.loge(ActivityUploader.class, "Splitting batch " + failedBatchId + " - " + failedLastId + " in batches of " + splitSize);
+        }
+        else
+        {
+            Logger.loge(ActivityUploader.class, "Dropping activities " + failedBatchId + " - " + failedLastId + ", the server does not accept them");
+            try
+            {
+                activityStore.ack(failedBatchId, failedLastId);
+            }
+            catch (Exception e)
+            {
+                Logger.loge(ActivityUploader.class, e.getMessage());
+            }
+            splitSize = 0;
+        }
+        // The batches after the failed one are posted right away.
+        rerunRequested = true;
+    }
+
+    /**
+     * Stops the upload thread once the work queued on it is done, the uploader cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the upload state.
+     *
+     * @return the state, as seen by the upload thread
+     */
+    public UploadState getState()
+    {
+        return state;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.impl;
+
+/**
+ * Chooses the number of activities posted per request from the outcome of the previous requests.
+ * The size grows by a quarter while requests are fast and succeed, shrinks by a quarter when a request
+ * is slow and is halved when one fails. Large backlogs thus drain in few requests on a good network,
+ * while batches stay small enough to get through on a flaky one. The size never exceeds the number of
+ * rows that fit the payload limit, based on the average size of a row seen so far.
+ * Not thread safe, it is only used by the upload thread.
+ */
+public class UploadBatchSizer
+{
+    // Weight of the latest request in the averages below.
+    private static final double SMOOTHING = 0.2;
+
+    private final int minSize;
+    private final int maxSize;
+    private final long targetLatency;
+    private final long maxPayloadBytes;
+
+    private int size;
+    private double bytesPerRow;
+    private double errorRate;
+
+    /**
+     * Instantiates a new Upload batch sizer.
+     *
+     * @param initialSize     the size of the first batch
+     * @param minSize         the smallest batch size
+     * @param maxSize         the largest batch size
+     * @param targetLatency   requests that take longer than this many milliseconds shrink the batch
+     * @param maxPayloadBytes the largest request body in bytes
+     */
+    public UploadBatchSizer(int initialSize, int minSize, int maxSize, long targetLatency, long maxPayloadBytes)
+    {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetLatency = targetLatency;
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.size = clamp(initialSize);
+    }
+
+    /**
+     * Gets the size of the next batch.
+     *
+     * @return the number of activities
+     */
+    public int getBatchSize()
+    {
+        return size;
+    }
+
+    /**
+     * Records a request that was acknowledged by the server.
+     *
+     * @param rows         the number of activities in the request
+     * @param payloadBytes the (estimated) size of the request body
+     * @param latency      the time in milliseconds until the response arrived
+     */
+    public void onSuccess(int rows, long payloadBytes, long latency)
+    {
+        errorRate = (1 - SMOOTHING) * errorRate;
+        if (rows > 0)
+        {
+            double rowBytes = (double) payloadBytes / rows;
+            bytesPerRow = bytesPerRow == 0 ? rowBytes : (1 - SMOOTHING) * bytesPerRow + SMOOTHING * rowBytes;
+        }
+        if (latency > targetLatency)
+        {
+            size = clamp(size * 3 / 4);
+        }
+        else if (rows >= size)
+        {
+            // Only grow when the batch was full, a short batch says nothing about a larger one. Growth slows
+            // down while requests keep failing now and then.
+            size = clamp(size + (int) (Math.max(minSize, size / 4) * (1 - errorRate)));
+        }
+    }
+
+    /**
+     * Records a request that failed.
+     */
+    public void onFailure()
+    {
+        errorRate = (1 - SMOOTHING) * errorRate + SMOOTHING;
+        size = clamp(size / 2);
+    }
+
+    private int clamp(int value)
+    {
+        int ceiling = maxSize;
+        if (bytesPerRow > 0)
+        {
+            ceiling = Math.min(ceiling, (int) (maxPayloadBytes / bytesPerRow));
+        }
+        return Math.max(minSize, Math.min(ceiling, value));
+    }
+}
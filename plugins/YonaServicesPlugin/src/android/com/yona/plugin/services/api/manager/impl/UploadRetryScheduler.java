@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.impl;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+
+import com.yona.plugin.services.api.model.ErrorMessage;
+import com.yona.plugin.services.api.receiver.YonaReceiver;
+import com.yona.plugin.services.enums.UploadErrorType;
+import com.yona.plugin.services.state.SharedPreference;
+import com.yona.plugin.services.utils.AppConstant;
+import com.yona.plugin.services.utils.Logger;
+
+import java.util.Random;
+
+/**
+ * Schedules a new upload after an upload failed, with an exponentially growing delay and jitter.
+ * The retry is an alarm delivered to {@link YonaReceiver}, and the attempt count and retry time are kept
+ * in the preferences, so retries continue after the process died and are restored after a reboot.
+ * The attempts are counted per batch. A batch that was rejected by the server, or that the server failed
+ * on too often, failed permanently: the retry state is cleared and the uploader splits or drops the batch,
+ * so it does not block the batches after it. Without a response, or when the server refused the client
+ * itself, the batch is retried at the longest delay for as long as it takes.
+ */
+public class UploadRetryScheduler
+{
+    private static final long NO_BATCH = -1;
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final int maxAttempts;
+    private final Random random = new Random();
+
+    /**
+     * Instantiates a new Upload retry scheduler with the default configuration.
+     *
+     * @param context the context
+     */
+    public UploadRetryScheduler(Context context)
+    {
+        this(context, AppConstant.UPLOAD_RETRY_BASE_DELAY, AppConstant.UPLOAD_RETRY_MAX_DELAY, AppConstant.UPLOAD_RETRY_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Instantiates a new Upload retry scheduler.
+     *
+     * @param context     the context
+     * @param baseDelay   the delay in milliseconds before the first retry
+     * @param maxDelay    the longest delay in milliseconds between two retries
+     * @param maxAttempts the number of retries of the same batch after server errors
+     */
+    public UploadRetryScheduler(Context context, long baseDelay, long maxDelay, int maxAttempts)
+    {
+        this.context = context.getApplicationContext();
+        this.preferences = new SharedPreference(this.context).getAppPreferences();
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Classifies the error of a failed upload.
+     *
+     * @param error the error passed to the data load listener
+     * @return the error type
+     */
+    public static UploadErrorType classify(Object error)
+    {
+        int httpStatus = error instanceof ErrorMessage ? ((ErrorMessage) error).getHttpStatus() : 0;
+        if (httpStatus == 0)
+        {
+            return UploadErrorType.NETWORK;
+        }
+        if (httpStatus >= 500 || httpStatus == 408 || httpStatus == 429)
+        {
+            return UploadErrorType.SERVER;
+        }
+        if (httpStatus == 400 || httpStatus == 413 || httpStatus == 422)
+        {
+            return UploadErrorType.CLIENT;
+        }
+        return UploadErrorType.REFUSED;
+    }
+
+    /**
+     * Forgets the failed attempts after an upload completed.
+     */
+    public synchronized void onUploadSucceeded()
+    {
+        if (!preferences.contains(AppConstant.UPLOAD_RETRY_BATCH))
+        {
+            return;
+        }
+        clear();
+    }
+
+    /**
+     * Schedules a retry after an upload failed, unless the batch failed permanently.
+     *
+     * @param batchId the id of the first activity of the batch that failed
+     * @param error   the error passed to the data load listener
+     * @return true if the batch failed permanently, the retry state is cleared and the batch must not be posted as is again
+     */
+    public synchronized boolean onUploadFailed(long batchId, Object error)
+    {
+        UploadErrorType errorType = classify(error);
+        int attempts = preferences.getLong(AppConstant.UPLOAD_RETRY_BATCH, NO_BATCH) == batchId
+                ? preferences.getInt(AppConstant.UPLOAD_RETRY_ATTEMPTS, 0) + 1
+                : 1;
+        if (errorType == UploadErrorType.CLIENT || (errorType == UploadErrorType.SERVER && attempts > maxAttempts))
+        {
+            Logger.loge(UploadRetryScheduler.class, "Giving up upload of batch " + batchId + ": " + errorType + ", attempt " + attempts);
+            clear();
+            return true;
+        }
+        long retryAt = System.currentTimeMillis() + getDelay(attempts);
+        preferences.edit()
+                .putLong(AppConstant.UPLOAD_RETRY_BATCH, batchId)
+                .putInt(AppConstant.UPLOAD_RETRY_ATTEMPTS, attempts)
+                .putLong(AppConstant.UPLOAD_RETRY_AT, retryAt)
+                .apply();
+        setAlarm(retryAt);
+        Logger.logi(UploadRetryScheduler.class, "Retrying upload of batch " + batchId + " after " + errorType + " error at " + retryAt);
+        return false;
+    }
+
+    /**
+     * Has pending retry boolean.
+     *
+     * @return whether a retry is scheduled
+     */
+    public synchronized boolean hasPendingRetry()
+    {
+        return preferences.contains(AppConstant.UPLOAD_RETRY_AT);
+    }
+
+    /**
+     * Is backing off boolean.
+     *
+     * @return whether the last upload failed and a retry is scheduled
+     */
+    public synchronized boolean isBackingOff()
+    {
+        return preferences.contains(AppConstant.UPLOAD_RETRY_BATCH);
+    }
+
+    /**
+     * Schedules the pending retry again, as alarms do not survive a reboot.
+     */
+    public synchronized void restore()
+    {
+        long retryAt = preferences.getLong(AppConstant.UPLOAD_RETRY_AT, 0);
+        if (retryAt > 0)
+        {
+            setAlarm(Math.max(retryAt, System.currentTimeMillis()));
+        }
+    }
+
+    private long getDelay(int attempt)
+    {
+        // Equal jitter: half of the exponential delay is fixed, the other half random.
+        long delay = baseDelay << Math.min(attempt - 1, 30);
+        delay = delay <= 0 ? maxDelay : Math.min(delay, maxDelay);
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    private void clear()
+    {
+        cancelAlarm();
+        preferences.edit()
+                .remove(AppConstant.UPLOAD_RETRY_BATCH)
+                .remove(AppConstant.UPLOAD_RETRY_ATTEMPTS)
+                .remove(AppConstant.UPLOAD_RETRY_AT)
+                .apply();
+    }
+
+    private void setAlarm(long triggerAt)
+    {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        // Not a wakeup alarm, a retry can wait until the device is awake anyway.
+        alarmManager.set(AlarmManager.RTC, triggerAt, getPendingIntent());
+    }
+
+    private void cancelAlarm()
+    {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getPendingIntent());
+    }
+
+    private PendingIntent getPendingIntent()
+    {
+        Intent alarmIntent = new Intent(context, YonaReceiver.class);
+        alarmIntent.setAction(AppConstant.RETRY_UPLOAD);
+        return PendingIntent.getBroadcast(context, 0, alarmIntent, 0);
+    }
+}
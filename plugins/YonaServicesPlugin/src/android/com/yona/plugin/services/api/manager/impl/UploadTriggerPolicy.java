@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.impl;
+
+import android.os.SystemClock;
+
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.enums.UploadState;
+import com.yona.plugin.services.enums.UploadTrigger;
+import com.yona.plugin.services.utils.Logger;
+
+/**
+ * Decides when to upload the stored activities without being asked: when many activities are waiting,
+ * when the oldest one is getting stale, when the device switches to an unmetered network, when it
+ * starts charging or when it is back online while a failed upload waits for its retry.
+ * Triggers are coalesced: a trigger while an upload runs, or shortly after the previous triggered upload,
+ * is dropped, so at most one upload runs and the radio is not woken up for every trigger.
+ * After an upload failed the queue thresholds, charging and unmetered networks do not trigger uploads, as they
+ * would bypass the backoff of the retry scheduler; only the retry alarm or getting back online resume uploading.
+ */
+public class UploadTriggerPolicy
+{
+    private final ActivityStore activityStore;
+    private final ActivityUploader activityUploader;
+    private final UploadRetryScheduler retryScheduler;
+    private final Runnable upload;
+    private final long pendingRows;
+    private final long maxAge;
+    private final long minInterval;
+
+    private long lastTriggerTime;
+    private boolean unmetered;
+
+    /**
+     * Instantiates a new Upload trigger policy.
+     *
+     * @param activityStore      the activity store
+     * @param activityUploader   the activity uploader, to see whether an upload runs
+     * @param retryScheduler     the retry scheduler, to see whether a retry is pending
+     * @param upload             starts an upload
+     * @param pendingRows        an upload is started when more activities than this are stored
+     * @param maxAge             an upload is started when the oldest activity ended this many milliseconds ago
+     * @param minInterval        the shortest time in milliseconds between two triggered uploads
+     */
+    public UploadTriggerPolicy(ActivityStore activityStore, ActivityUploader activityUploader, UploadRetryScheduler retryScheduler, Runnable upload, long pendingRows, long maxAge, long minInterval)
+    {
+        this.activityStore = activityStore;
+        this.activityUploader = activityUploader;
+        this.retryScheduler = retryScheduler;
+        this.upload = upload;
+        this.pendingRows = pendingRows;
+        this.maxAge = maxAge;
+        this.minInterval = minInterval;
+    }
+
+    /**
+     * Checks the queue thresholds, to be called after activities were appended to the activity store.
+     */
+    public void onActivitiesStored()
+    {
+        if (retryScheduler.isBackingOff())
+        {
+            return;
+        }
+        if (activityStore.count() > pendingRows)
+        {
+            trigger(UploadTrigger.PENDING_ROWS);
+            return;
+        }
+        long oldestEndTime = activityStore.oldestTimestamp();
+        if (oldestEndTime > 0 && System.currentTimeMillis() - oldestEndTime > maxAge)
+        {
+            trigger(UploadTrigger.OLDEST_ROW_AGE);
+        }
+    }
+
+    /**
+     * To be called when the device starts charging.
+     */
+    public void onChargingStarted()
+    {
+        if (retryScheduler.isBackingOff())
+        {
+            return;
+        }
+        trigger(UploadTrigger.CHARGING);
+    }
+
+    /**
+     * To be called when the network changes, triggers an upload when the device gets an unmetered network,
+     * or when it is back online and a retry is pending, rather than waiting for the retry alarm.
+     *
+     * @param connected whether the device is connected
+     * @param metered   whether the network is metered
+     * @param restored  whether the device went from offline to online
+     */
+    public void onNetworkChanged(boolean connected, boolean metered, boolean restored)
+    {
+        boolean nowUnmetered = connected && !metered;
+        boolean becameUnmetered;
+        synchronized (this)
+        {
+            becameUnmetered = nowUnmetered && !unmetered;
+            unmetered = nowUnmetered;
+        }
+        if (retryScheduler.isBackingOff())
+        {
+            if (restored && retryScheduler.hasPendingRetry())
+            {
+                trigger(UploadTrigger.CONNECTIVITY_RESTORED);
+            }
+        }
+        else if (becameUnmetered)
+        {
+            trigger(UploadTrigger.UNMETERED_NETWORK);
+        }
+    }
+
+    private void trigger(UploadTrigger trigger)
+    {
+        synchronized (this)
+        {
+            long now = SystemClock.elapsedRealtime();
+            if (activityUploader.getState() != UploadState.IDLE || (lastTriggerTime != 0 && now - lastTriggerTime < minInterval))
+            {
+                return;
+            }
+            lastTriggerTime = now;
+        }
+        Logger.logi(UploadTriggerPolicy.class, "Upload triggered by " + trigger);
+        upload.run();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.network;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import com.google.gson.stream.JsonWriter;
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.utils.DateUtility;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Writes a batch of activities as the JSON of an {@link com.yona.plugin.services.api.model.AppActivity},
+ * straight from the activity store into the request. No objects are created per activity, so the memory
+ * used by an upload does not depend on the size of the batch.
+ * The batch is read again every time the body is written, which keeps the body repeatable for retries.
+ */
+public class ActivityBatchRequestBody extends RequestBody
+{
+    private static final MediaType JSON = MediaType.parse("application/json; charset=UTF-8");
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ActivityStore activityStore;
+    private final ActivityBatch batch;
+
+    /**
+     * Instantiates a new Activity batch request body.
+     *
+     * @param activityStore the activity store
+     * @param batch         the batch
+     */
+    public ActivityBatchRequestBody(ActivityStore activityStore, ActivityBatch batch)
+    {
+        this.activityStore = activityStore;
+        this.batch = batch;
+    }
+
+    @Override
+    public MediaType contentType()
+    {
+        return JSON;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException
+    {
+        // Not closed, as that would close the sink which belongs to the caller.
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(sink.outputStream(), UTF_8));
+        writer.beginObject();
+        writer.name("deviceDateTime").value(DateUtility.getLongFormatDate(System.currentTimeMillis()));
+        writer.name("activities").beginArray();
+        activityStore.readActivities(batch, (packageName, startTime, endTime) ->
+        {
+            writer.beginObject();
+            writer.name("application").value(packageName);
+            writer.name("startTime").value(DateUtility.getLongFormatDate(startTime));
+            writer.name("endTime").value(DateUtility.getLongFormatDate(endTime));
+            writer.endObject();
+        });
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+}
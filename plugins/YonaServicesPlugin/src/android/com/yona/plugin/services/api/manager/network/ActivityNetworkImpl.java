@@ -13,9 +13,13 @@ import android.content.Context;
 import java.util.Locale;
 
 import com.yona.plugin.services.api.model.AppActivity;
+import com.yona.plugin.services.api.model.ErrorMessage;
 import com.yona.plugin.services.listener.DataLoadListener;
+import com.yona.plugin.services.state.SharedPreference;
 import com.yona.plugin.services.utils.Logger;
 
+import okhttp3.RequestBody;
+
 /**
  * The type Activity network.
  */
@@ -25,6 +29,16 @@ public class ActivityNetworkImpl extends BaseImpl
     public ActivityNetworkImpl(Context context) {
         super(context);
     }
+
+    /**
+     * Instantiates a new Activity network that takes the server url from other preferences than those of the app.
+     *
+     * @param context           the context
+     * @param sharedPreferences the shared preferences
+     */
+    public ActivityNetworkImpl(Context context, SharedPreference sharedPreferences) {
+        super(context, sharedPreferences);
+    }
     /**
      * Post app activity.
      *
@@ -43,6 +57,29 @@ public class ActivityNetworkImpl extends BaseImpl
         catch (Exception e)
         {
             Logger.loge(ActivityNetworkImpl.class, e.getMessage());
+            listener.onError(new ErrorMessage(e.getMessage()));
+        }
+    }
+
+    /**
+     * Post app activity.
+     *
+     * @param url          the url
+     * @param yonaPassword the yona password
+     * @param body         the app activity body, see {@link ActivityBatchRequestBody}
+     * @param listener     the listener
+     */
+    public void postAppActivity(String url, String yonaPassword, RequestBody body, DataLoadListener listener)
+    {
+        try
+        {
+
+            getRestApi().postAppActivity(url, yonaPassword, Locale.getDefault().toString().replace('_', '-'), body).enqueue(getCall(listener));
+        }
+        catch (Exception e)
+        {
+            Logger.loge(ActivityNetworkImpl.class, e.getMessage());
+            listener.onError(new ErrorMessage(e.getMessage()));
         }
     }
 }
\ No newline at end of file
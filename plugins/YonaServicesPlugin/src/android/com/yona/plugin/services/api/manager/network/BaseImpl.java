@@ -9,15 +9,12 @@
 package com.yona.plugin.services.api.manager.network;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.net.ConnectException;
-import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
-import java.util.concurrent.TimeUnit;
 
 import com.yona.plugin.services.utils.AppConstant;
 import com.yona.plugin.services.api.model.ErrorMessage;
@@ -28,15 +25,10 @@ import com.yona.plugin.services.api.utils.NetworkUtils;
 import com.yona.plugin.services.api.utils.ServerErrorCode;
 import com.yona.plugin.services.state.SharedPreference;
 
-import okhttp3.Interceptor;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
 import okhttp3.ResponseBody;
 import retrofit2.Callback;
 import retrofit2.Converter;
 import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * Created by kinnarvasa on 28/03/16.
@@ -45,59 +37,19 @@ import retrofit2.converter.gson.GsonConverterFactory;
 // TODO: Revisit
 public class BaseImpl
 {
-    private final int maxStale = 60 * 60 * 24 * 28; // keep cache for 28 days.
     private Context appContext;
     private SharedPreference sharedPreferences;
 
     protected BaseImpl(Context context)
     {
-        appContext = context;
-        sharedPreferences = new SharedPreference(context);
-
+        this(context, new SharedPreference(context));
     }
 
-    private final Interceptor getInterceptor = new Interceptor()
+    protected BaseImpl(Context context, SharedPreference sharedPreferences)
     {
-        @Override
-        public Response intercept(Chain chain) throws IOException
-        {
-            Response response = null;
-            Request request = chain.request();
-            chain.request().newBuilder().addHeader(NetworkConstant.CONTENT_TYPE, "application/json");
-            if (NetworkUtils.isOnline(appContext))
-            {
-                chain.request().newBuilder().addHeader("Cache-Control", "only-if-cached").build();
-            }
-            else
-            {
-                throw new UnknownHostException();
-            }
-
-            response = chain.proceed(request);
-            if (response.priorResponse() != null &&
-                    response.priorResponse().code() ==
-                            HttpURLConnection.HTTP_MOVED_PERM)
-            {
-
-                throw new UnknownHostException();
-            }
-            else
-            {
-                request = request.newBuilder().build();
-            }
-
-            return response.newBuilder()
-                    .header("Cache-Control", "public, max-age=" + maxStale)
-                    .build();
-        }
-    };
-
-    // Made both variables  below as class variables to make sure all network impl classes are using same host environment serverURL.
-    // If needed in future instead of using class variables we need to store all the impl instances into an array and iterate and update t
-    // host serverURL in all instances when environment switch happens.
-
-    private static Retrofit retrofit;
-    private static RestApi restApi;
+        appContext = context;
+        this.sharedPreferences = sharedPreferences;
+    }
 
     /**
      * Gets retrofit.
@@ -106,17 +58,13 @@ public class BaseImpl
      */
     Retrofit getRetrofit()
     {
-
+        // All network impls share the client and Retrofit instance, so they all use the same host environment serverURL.
         String serverUrl = sharedPreferences.getServerUrl();
-        if (retrofit == null && serverUrl != null)
+        if (serverUrl == null)
         {
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(serverUrl)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .client(gethttpClient())
-                    .build();
+            return null;
         }
-        return retrofit;
+        return HttpClientProvider.getInstance(appContext).getRetrofit(serverUrl);
     }
 
     /**
@@ -124,8 +72,7 @@ public class BaseImpl
      */
     protected void reinitializeAPI()
     {
-        retrofit = null; // this method is require when user do signout and want to change environment, it should update with new environemnt.
-        restApi = null;
+        HttpClientProvider.getInstance(appContext).resetRetrofit(); // this method is require when user do signout and want to change environment, it should update with new environemnt.
     }
 
     /**
@@ -133,17 +80,7 @@ public class BaseImpl
      */
     protected void reinitializeRetrofit()
     {
-        retrofit = null; // this method is require when user do signout and want to change environment, it should update with new environemnt.
-    }
-
-    private OkHttpClient gethttpClient()
-    {
-        return new OkHttpClient.Builder()
-                .connectTimeout(NetworkConstant.API_CONNECT_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)
-                .writeTimeout(NetworkConstant.API_WRITE_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)
-                .readTimeout(NetworkConstant.API_READ_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)
-                .addInterceptor(getInterceptor)
-                .build();
+        HttpClientProvider.getInstance(appContext).resetRetrofit(); // this method is require when user do signout and want to change environment, it should update with new environemnt.
     }
 
     /**
@@ -153,11 +90,7 @@ public class BaseImpl
      */
     RestApi getRestApi()
     {
-        if (restApi == null)
-        {
-            restApi = getRetrofit().create(RestApi.class);
-        }
-        return restApi;
+        return HttpClientProvider.getInstance(appContext).getRestApi(sharedPreferences.getServerUrl());
     }
 
     /**
@@ -266,21 +199,22 @@ public class BaseImpl
             {
                 Converter<ResponseBody, ErrorMessage> errorConverter =
                         getRetrofit().responseBodyConverter(ErrorMessage.class, new Annotation[0]);
-                ErrorMessage errorMessage = errorConverter.convert(response.errorBody());
+                ErrorMessage body = errorConverter.convert(response.errorBody());
+                ErrorMessage errorMessage = body == null
+                        ? new ErrorMessage(response.message(), null, response.code())
+                        : new ErrorMessage(body.getMessage(), body.getCode(), response.code());
                 if (ServerErrorCode.USER_NOT_FOUND.equals(errorMessage.getCode()))
                 {
                     reinitializeRetrofit();
                     // Todo: handle user not exists
                     //YonaApplication.getEventChangeManager().notifyChange(EventChangeManager.EVENT_USER_NOT_EXIST, errorMessage);
                 }
-                else
-                {
-                    listener.onError(errorMessage);
-                }
+                // Always report the error, callers keep track of the requests they are waiting for.
+                listener.onError(errorMessage);
             }
-            catch (IOException e)
+            catch (IOException | RuntimeException e)
             {
-                listener.onError(new ErrorMessage(e.getMessage()));
+                listener.onError(new ErrorMessage(e.getMessage(), null, response.code()));
             }
         }
     }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.network;
+
+import java.io.IOException;
+
+import com.yona.plugin.services.state.SharedPreference;
+import com.yona.plugin.services.utils.Logger;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Compresses the bodies of the requests marked with the {@link NetworkConstant#COMPRESS_REQUEST} header with gzip,
+ * when request compression is enabled in the preferences. Only the activity uploads are marked: they repeat
+ * the same field and package names many times, so they compress well. The marker is never sent.
+ * A server that does not accept compressed bodies answers 415 Unsupported Media Type; compression is
+ * then switched off for good and the request is sent again uncompressed.
+ */
+public class GzipRequestInterceptor implements Interceptor
+{
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
+
+    private final SharedPreference sharedPreferences;
+
+    /**
+     * Instantiates a new Gzip request interceptor.
+     *
+     * @param sharedPreferences the shared preferences holding the compression setting
+     */
+    public GzipRequestInterceptor(SharedPreference sharedPreferences)
+    {
+        this.sharedPreferences = sharedPreferences;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        if (request.header(NetworkConstant.COMPRESS_REQUEST) == null)
+        {
+            return chain.proceed(request);
+        }
+        request = request.newBuilder().removeHeader(NetworkConstant.COMPRESS_REQUEST).build();
+        if (request.body() == null || request.header(CONTENT_ENCODING) != null || !sharedPreferences.isRequestCompressionEnabled())
+        {
+            return chain.proceed(request);
+        }
+        Request compressedRequest = request.newBuilder()
+                .header(CONTENT_ENCODING, NetworkConstant.GZIP)
+                .method(request.method(), gzip(request.body()))
+                .build();
+        Response response = chain.proceed(compressedRequest);
+        if (response.code() != HTTP_UNSUPPORTED_MEDIA_TYPE)
+        {
+            return response;
+        }
+        Logger.logi(GzipRequestInterceptor.class, "Server does not accept compressed requests, disabling compression");
+        sharedPreferences.setRequestCompressionEnabled(false);
+        response.body().close();
+        return chain.proceed(request);
+    }
+
+    // Compresses the whole body up front, so the request keeps a Content-Length instead of being chunked.
+    private static RequestBody gzip(final RequestBody body) throws IOException
+    {
+        final Buffer compressed = new Buffer();
+        BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed));
+        body.writeTo(gzipSink);
+        gzipSink.close();
+        return new RequestBody()
+        {
+            @Override
+            public MediaType contentType()
+            {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength()
+            {
+                return compressed.size();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException
+            {
+                sink.write(compressed.snapshot());
+            }
+        };
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.network;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.yona.plugin.services.api.json.JsonCodec;
+import com.yona.plugin.services.api.utils.ConnectivityMonitor;
+import com.yona.plugin.services.state.SharedPreference;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.ConnectionPool;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * Owns the OkHttpClient shared by all network impls for the lifetime of the process, so its connection
+ * pool, TLS sessions and dispatcher threads survive a change of environment or a retrofit reset.
+ * Only the Retrofit instance on top of it is rebuilt when the base url changes.
+ * GET responses are kept in a bounded disk cache. A stale response is revalidated with the server using its
+ * ETag or Last-Modified date, so an unchanged resource costs a 304 without a body; offline, the cache answers.
+ */
+public class HttpClientProvider
+{
+    private static HttpClientProvider instance;
+
+    private final ConnectivityMonitor connectivityMonitor;
+    private final NetworkMetrics networkMetrics = new NetworkMetrics();
+    private final OkHttpClient httpClient;
+    private String baseUrl;
+    private Retrofit retrofit;
+    private RestApi restApi;
+
+    /**
+     * Gets instance.
+     *
+     * @param context the context
+     * @return the instance
+     */
+    public static synchronized HttpClientProvider getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            instance = new HttpClientProvider(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private HttpClientProvider(Context appContext)
+    {
+        connectivityMonitor = ConnectivityMonitor.getInstance(appContext);
+        httpClient = new OkHttpClient.Builder()
+                .connectTimeout(NetworkConstant.API_CONNECT_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(NetworkConstant.API_WRITE_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(NetworkConstant.API_READ_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)
+                .connectionPool(new ConnectionPool(NetworkConstant.CONNECTION_POOL_MAX_IDLE, NetworkConstant.CONNECTION_KEEP_ALIVE_IN_MINUTES, TimeUnit.MINUTES))
+                // Concurrent uploads share one multiplexed connection when the server speaks HTTP/2.
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .cache(new Cache(new File(appContext.getCacheDir(), NetworkConstant.CACHING_FILE), NetworkConstant.HTTP_CACHE_SIZE_IN_BYTES))
+                .addInterceptor(getInterceptor)
+                .addInterceptor(new GzipRequestInterceptor(new SharedPreference(appContext)))
+                .eventListenerFactory(networkMetrics)
+                .build();
+    }
+
+    private final Interceptor getInterceptor = new Interceptor()
+    {
+        @Override
+        public Response intercept(Chain chain) throws IOException
+        {
+            Request request = chain.request();
+            if (!connectivityMonitor.isOnline())
+            {
+                if (!"GET".equals(request.method()))
+                {
+                    throw new UnknownHostException();
+                }
+                // Offline, a GET is answered from the cache, or with a 504 when nothing is cached.
+                request = request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build();
+            }
+
+            Response response = chain.proceed(request);
+            if (response.priorResponse() != null &&
+                    response.priorResponse().code() ==
+                            HttpURLConnection.HTTP_MOVED_PERM)
+            {
+
+                throw new UnknownHostException();
+            }
+            return response;
+        }
+    };
+
+    /**
+     * Gets network metrics.
+     *
+     * @return the metrics of the calls of the shared client
+     */
+    public NetworkMetrics getNetworkMetrics()
+    {
+        return networkMetrics;
+    }
+
+    /**
+     * Gets retrofit for a base url, rebuilding it on top of the shared client when the url changed.
+     *
+     * @param baseUrl the base url
+     * @return the retrofit
+     */
+    public synchronized Retrofit getRetrofit(String baseUrl)
+    {
+        if (retrofit == null || !baseUrl.equals(this.baseUrl))
+        {
+            this.baseUrl = baseUrl;
+            retrofit = new Retrofit.Builder()
+                    .baseUrl(baseUrl)
+                    .addConverterFactory(GsonConverterFactory.create(JsonCodec.getGson()))
+                    .client(httpClient)
+                    .build();
+            restApi = null;
+        }
+        return retrofit;
+    }
+
+    /**
+     * Gets the rest api for a base url.
+     *
+     * @param baseUrl the base url
+     * @return the rest api
+     */
+    public synchronized RestApi getRestApi(String baseUrl)
+    {
+        Retrofit current = getRetrofit(baseUrl);
+        if (restApi == null)
+        {
+            restApi = current.create(RestApi.class);
+        }
+        return restApi;
+    }
+
+    /**
+     * Drops the Retrofit instance, the next request builds a new one on top of the same client.
+     */
+    public synchronized void resetRetrofit()
+    {
+        retrofit = null;
+        restApi = null;
+    }
+}
@@ -26,10 +26,23 @@ public interface NetworkConstant
      * The constant CONTENT_TYPE.
      */
     String CONTENT_TYPE = "Content-Type";
+    /**
+     * The constant CACHE_CONTROL.
+     */
+    String CACHE_CONTROL = "Cache-Control";
     /**
      * The constant YONA_NEW_PASSWORD.
      */
     String YONA_NEW_PASSWORD = "Yona-NewDeviceRequestPassword";
+    /**
+     * The constant COMPRESS_REQUEST, marks the requests whose body may be compressed, see {@link GzipRequestInterceptor}.
+     * It is removed before the request is sent.
+     */
+    String COMPRESS_REQUEST = "Compress-Request";
+    /**
+     * The constant GZIP.
+     */
+    String GZIP = "gzip";
     /**
      * The constant BODY.
      */
@@ -39,6 +52,10 @@ public interface NetworkConstant
      * The constant CACHING_FILE.
      */
     String CACHING_FILE = "apiResponse";
+    /**
+     * The constant HTTP_CACHE_SIZE_IN_BYTES, the size of the response cache on disk.
+     */
+    long HTTP_CACHE_SIZE_IN_BYTES = 10 * 1024 * 1024;
 
     /**
      * The constant API_CONNECT_TIMEOUT_IN_SECONDS.
@@ -53,6 +70,15 @@ public interface NetworkConstant
      */
     int API_READ_TIMEOUT_IN_SECONDS = 30;
 
+    /**
+     * The constant CONNECTION_POOL_MAX_IDLE, the number of idle connections kept open.
+     */
+    int CONNECTION_POOL_MAX_IDLE = 4;
+    /**
+     * The constant CONNECTION_KEEP_ALIVE_IN_MINUTES, how long an idle connection is kept open.
+     */
+    long CONNECTION_KEEP_ALIVE_IN_MINUTES = 5;
+
     /**
      * The constant RESPONSE_STATUS.
      */
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.yona.plugin.services.utils.LatencyHistogram;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Collects the timing of every call of the shared client: a latency histogram for each phase of a call,
+ * from the DNS lookup to the end of the response body, and the calls, failures and bytes of each endpoint.
+ * Failures are calls that got no response, http errors are responses with an error status.
+ * Endpoints are the method, host and path of a request, with ids in the path replaced, so the metrics of
+ * all users of the same endpoint add up.
+ */
+public class NetworkMetrics implements EventListener.Factory
+{
+    private static final String[] PHASES = {"dns", "connect", "tls", "request", "server", "response", "call"};
+    private static final int DNS = 0;
+    private static final int CONNECT = 1;
+    private static final int TLS = 2;
+    private static final int REQUEST = 3;
+    private static final int SERVER = 4;
+    private static final int RESPONSE = 5;
+    private static final int CALL = 6;
+
+    // Beyond this many endpoints, calls are counted under one endpoint, so the metrics cannot grow without bounds.
+    private static final int MAX_ENDPOINTS = 50;
+    private static final String OTHER_ENDPOINT = "other";
+    private static final Pattern ID_SEGMENT = Pattern.compile("[0-9]+|[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    private final long since = System.currentTimeMillis();
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+    private final Map<String, EndpointMetrics> endpoints = new LinkedHashMap<>();
+
+    /**
+     * Instantiates new Network metrics.
+     */
+    public NetworkMetrics()
+    {
+        for (int i = 0; i < phases.length; i++)
+        {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public EventListener create(Call call)
+    {
+        return new CallMetrics();
+    }
+
+    /**
+     * Converts the metrics collected since the process started to JSON.
+     *
+     * @return the json object
+     * @throws JSONException the json exception
+     */
+    public JSONObject toJson() throws JSONException
+    {
+        JSONObject phasesJson = new JSONObject();
+        for (int i = 0; i < phases.length; i++)
+        {
+            phasesJson.put(PHASES[i], phases[i].toJson());
+        }
+        JSONObject endpointsJson = new JSONObject();
+        synchronized (endpoints)
+        {
+            for (Map.Entry<String, EndpointMetrics> endpoint : endpoints.entrySet())
+            {
+                endpointsJson.put(endpoint.getKey(), endpoint.getValue().toJson());
+            }
+        }
+        JSONObject json = new JSONObject();
+        json.put("since", since);
+        json.put("phases", phasesJson);
+        json.put("endpoints", endpointsJson);
+        return json;
+    }
+
+    private EndpointMetrics getEndpoint(Request request)
+    {
+        String key = getEndpointKey(request);
+        synchronized (endpoints)
+        {
+            EndpointMetrics endpoint = endpoints.get(key);
+            if (endpoint == null)
+            {
+                if (endpoints.size() >= MAX_ENDPOINTS)
+                {
+                    key = OTHER_ENDPOINT;
+                    endpoint = endpoints.get(key);
+                }
+                if (endpoint == null)
+                {
+                    endpoint = new EndpointMetrics();
+                    endpoints.put(key, endpoint);
+                }
+            }
+            return endpoint;
+        }
+    }
+
+    private static String getEndpointKey(Request request)
+    {
+        HttpUrl url = request.url();
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(url.host());
+        for (String segment : url.pathSegments())
+        {
+            key.append('/').append(ID_SEGMENT.matcher(segment).matches() ? "{id}" : segment);
+        }
+        return key.toString();
+    }
+
+    private static long elapsedMillis(long startNanos)
+    {
+        return (System.nanoTime() - startNanos) / 1000000L;
+    }
+
+    private static class EndpointMetrics
+    {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long failures;
+        private long httpErrors;
+        private long bytesSent;
+        private long bytesReceived;
+
+        synchronized void onCallEnd(long millis, long sent, long received, boolean failed, boolean httpError)
+        {
+            latency.record(millis);
+            bytesSent += sent;
+            bytesReceived += received;
+            if (failed)
+            {
+                failures++;
+            }
+            if (httpError)
+            {
+                httpErrors++;
+            }
+        }
+
+        synchronized JSONObject toJson() throws JSONException
+        {
+            JSONObject json = new JSONObject();
+            json.put("calls", latency.getCount());
+            json.put("failures", failures);
+            json.put("httpErrors", httpErrors);
+            json.put("bytesSent", bytesSent);
+            json.put("bytesReceived", bytesReceived);
+            json.put("latency", latency.toJson());
+            return json;
+        }
+    }
+
+    /**
+     * The listener of a single call. Events of one call arrive one at a time, so it needs no locking.
+     */
+    private class CallMetrics extends EventListener
+    {
+        private long callStart;
+        private long dnsStart;
+        private long connectStart;
+        private long secureConnectStart;
+        private long requestStart;
+        private long requestEnd;
+        private long responseStart;
+        private long bytesSent;
+        private long bytesReceived;
+        private boolean failed;
+        private boolean httpError;
+        private Request request;
+
+        @Override
+        public void callStart(Call call)
+        {
+            callStart = System.nanoTime();
+            request = call.request();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName)
+        {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList)
+        {
+            phases[DNS].record(elapsedMillis(dnsStart));
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy)
+        {
+            connectStart = System.nanoTime();
+            secureConnectStart = 0;
+        }
+
+        @Override
+        public void secureConnectStart(Call call)
+        {
+            secureConnectStart = System.nanoTime();
+            // The TCP connect ends where the TLS handshake starts.
+            phases[CONNECT].record((secureConnectStart - connectStart) / 1000000L);
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake)
+        {
+            phases[TLS].record(elapsedMillis(secureConnectStart));
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol)
+        {
+            if (secureConnectStart == 0)
+            {
+                phases[CONNECT].record(elapsedMillis(connectStart));
+            }
+        }
+
+        @Override
+        public void requestHeadersStart(Call call)
+        {
+            requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request)
+        {
+            requestEnd = System.nanoTime();
+            bytesSent += request.headers().byteCount();
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount)
+        {
+            requestEnd = System.nanoTime();
+            bytesSent += byteCount;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call)
+        {
+            responseStart = System.nanoTime();
+            phases[REQUEST].record((requestEnd - requestStart) / 1000000L);
+            // The time to first byte after the request was written, mostly spent by the server.
+            phases[SERVER].record((responseStart - requestEnd) / 1000000L);
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response)
+        {
+            bytesReceived += response.headers().byteCount();
+            httpError = !response.isSuccessful();
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount)
+        {
+            bytesReceived += byteCount;
+            phases[RESPONSE].record(elapsedMillis(responseStart));
+        }
+
+        @Override
+        public void callEnd(Call call)
+        {
+            onCallEnd();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe)
+        {
+            failed = true;
+            onCallEnd();
+        }
+
+        private void onCallEnd()
+        {
+            long millis = elapsedMillis(callStart);
+            phases[CALL].record(millis);
+            getEndpoint(request).onCallEnd(millis, bytesSent, bytesReceived, failed, httpError);
+        }
+    }
+}
@@ -10,9 +10,11 @@ package com.yona.plugin.services.api.manager.network;
 
 import com.yona.plugin.services.api.model.AppActivity;
 
+import okhttp3.RequestBody;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.POST;
 import retrofit2.http.Url;
 
@@ -28,6 +30,19 @@ public interface RestApi
      * @return the call
      */
     @POST
+    @Headers(NetworkConstant.COMPRESS_REQUEST + ": " + NetworkConstant.GZIP)
     Call<Void> postAppActivity(@Url String url, @Header(NetworkConstant.YONA_PASSWORD) String password, @Header(NetworkConstant.ACCEPT_LANGUAGE) String acceptLanguage, @Body AppActivity activity);
 
+    /**
+     * APP ACTIVITY, with a body that is already serialized, see {@link ActivityBatchRequestBody}.
+     *
+     * @param url      the url
+     * @param password the password
+     * @param body     the app activity body
+     * @return the call
+     */
+    @POST
+    @Headers(NetworkConstant.COMPRESS_REQUEST + ": " + NetworkConstant.GZIP)
+    Call<Void> postAppActivity(@Url String url, @Header(NetworkConstant.YONA_PASSWORD) String password, @Header(NetworkConstant.ACCEPT_LANGUAGE) String acceptLanguage, @Body RequestBody body);
+
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.model;
+
+/**
+ * Describes a batch of stored activities by its id range, without holding the activities themselves.
+ */
+public class ActivityBatch
+{
+    private final long firstId;
+    private final long lastId;
+    private final int size;
+    private final long packageNameBytes;
+
+    /**
+     * Instantiates a new Activity batch.
+     *
+     * @param firstId          the id of the first activity
+     * @param lastId           the id of the last activity
+     * @param size             the number of activities
+     * @param packageNameBytes the total length of the package names of the activities
+     */
+    public ActivityBatch(long firstId, long lastId, int size, long packageNameBytes)
+    {
+        this.firstId = firstId;
+        this.lastId = lastId;
+        this.size = size;
+        this.packageNameBytes = packageNameBytes;
+    }
+
+    /**
+     * Gets first id.
+     *
+     * @return the id of the first activity
+     */
+    public long getFirstId()
+    {
+        return firstId;
+    }
+
+    /**
+     * Gets last id.
+     *
+     * @return the id of the last activity
+     */
+    public long getLastId()
+    {
+        return lastId;
+    }
+
+    /**
+     * Gets size.
+     *
+     * @return the number of activities
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Gets package name bytes.
+     *
+     * @return the total length of the package names of the activities
+     */
+    public long getPackageNameBytes()
+    {
+        return packageNameBytes;
+    }
+}
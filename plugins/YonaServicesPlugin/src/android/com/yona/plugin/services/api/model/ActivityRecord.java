@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.model;
+
+import android.content.ContentValues;
+
+import com.yona.plugin.services.api.db.DBConstant;
+
+/**
+ * A row of the activity tracker table. Times are kept in milliseconds since the epoch and are only
+ * formatted when the row is written into an upload.
+ */
+public class ActivityRecord extends BaseEntity
+{
+    private int applicationId;
+    private long startTime;
+    private long endTime;
+
+    /**
+     * Instantiates a new Activity record.
+     *
+     * @param applicationId the application id
+     * @param startTime     the start time in milliseconds since the epoch
+     * @param endTime       the end time in milliseconds since the epoch
+     */
+    public ActivityRecord(int applicationId, long startTime, long endTime)
+    {
+        this.applicationId = applicationId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Gets application id.
+     *
+     * @return the application id
+     */
+    public int getApplicationId()
+    {
+        return applicationId;
+    }
+
+    /**
+     * Gets start time.
+     *
+     * @return the start time in milliseconds since the epoch
+     */
+    public long getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * Gets end time.
+     *
+     * @return the end time in milliseconds since the epoch
+     */
+    public long getEndTime()
+    {
+        return endTime;
+    }
+
+    @Override
+    public ContentValues getDbContentValues()
+    {
+        ContentValues values = new ContentValues();
+        values.put(DBConstant.APPLICATION_ID, applicationId);
+        values.put(DBConstant.APPLICATION_START_TIME, startTime);
+        values.put(DBConstant.APPLICATION_END_TIME, endTime);
+        return values;
+    }
+}
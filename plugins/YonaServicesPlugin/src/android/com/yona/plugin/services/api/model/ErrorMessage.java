@@ -24,6 +24,8 @@ public class ErrorMessage extends BaseEntity
     @SerializedName("code")
     @Expose
     private final String code;
+    // Not part of the response body, 0 if the request failed without a response.
+    private final transient int httpStatus;
 
     /**
      * Instantiates a new Error message.
@@ -51,9 +53,22 @@ public class ErrorMessage extends BaseEntity
      * @param code    the error code for custom messages.
      */
     public ErrorMessage(String message, String code)
+    {
+        this(message, code, 0);
+    }
+
+    /**
+     * Instantiates a new Error message.
+     *
+     * @param message    the message
+     * @param code       the error code for custom messages.
+     * @param httpStatus the http status of the response
+     */
+    public ErrorMessage(String message, String code, int httpStatus)
     {
         this.code = code;
         this.message = message;
+        this.httpStatus = httpStatus;
     }
 
 
@@ -77,6 +92,16 @@ public class ErrorMessage extends BaseEntity
         return code;
     }
 
+    /**
+     * Gets http status.
+     *
+     * @return the http status of the response, or 0 if the request failed without a response
+     */
+    public int getHttpStatus()
+    {
+        return httpStatus;
+    }
+
 
     @Override
     public ContentValues getDbContentValues()
@@ -91,6 +91,16 @@ public class User extends BaseEntity
         return firstName;
     }
 
+    /**
+     * Sets first name.
+     *
+     * @param firstName The firstName
+     */
+    public void setFirstName(String firstName)
+    {
+        this.firstName = firstName;
+    }
+
     /**
      * Gets last name.
      *
@@ -101,6 +111,16 @@ public class User extends BaseEntity
         return lastName;
     }
 
+    /**
+     * Sets last name.
+     *
+     * @param lastName The lastName
+     */
+    public void setLastName(String lastName)
+    {
+        this.lastName = lastName;
+    }
+
     /**
      * Gets mobile number.
      *
@@ -111,6 +131,16 @@ public class User extends BaseEntity
         return mobileNumber;
     }
 
+    /**
+     * Sets mobile number.
+     *
+     * @param mobileNumber The mobileNumber
+     */
+    public void setMobileNumber(String mobileNumber)
+    {
+        this.mobileNumber = mobileNumber;
+    }
+
     /**
      * Gets nickname.
      *
@@ -121,6 +151,16 @@ public class User extends BaseEntity
         return nickname;
     }
 
+    /**
+     * Sets nickname.
+     *
+     * @param nickname The nickname
+     */
+    public void setNickname(String nickname)
+    {
+        this.nickname = nickname;
+    }
+
     /**
      * Gets devices.
      *
@@ -131,6 +171,36 @@ public class User extends BaseEntity
         return devices;
     }
 
+    /**
+     * Sets devices.
+     *
+     * @param devices The devices
+     */
+    public void setDevices(List<String> devices)
+    {
+        this.devices = devices;
+    }
+
+    /**
+     * Gets mobile number confirmation code.
+     *
+     * @return The mobileNumberConfirmationCode
+     */
+    public String getMobileNumberConfirmationCode()
+    {
+        return mobileNumberConfirmationCode;
+    }
+
+    /**
+     * Sets mobile number confirmation code.
+     *
+     * @param mobileNumberConfirmationCode The mobileNumberConfirmationCode
+     */
+    public void setMobileNumberConfirmationCode(String mobileNumberConfirmationCode)
+    {
+        this.mobileNumberConfirmationCode = mobileNumberConfirmationCode;
+    }
+
     @Override
     public ContentValues getDbContentValues()
     {
@@ -142,11 +212,21 @@ public class User extends BaseEntity
         return status;
     }
 
+    public void setStatus(UserStatus status)
+    {
+        this.status = status;
+    }
+
     public int getVersion()
     {
         return version;
     }
 
+    public void setVersion(int version)
+    {
+        this.version = version;
+    }
+
     public boolean isActive()
     {
         return this.getStatus() == UserStatus.ACTIVE;
@@ -25,9 +25,13 @@ import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 
 import com.yona.plugin.services.AppMonitoringService;
+import com.yona.plugin.services.api.manager.APIManager;
+import com.yona.plugin.services.api.manager.impl.UploadRetryScheduler;
+import com.yona.plugin.services.api.service.MonitoringScheduler;
 import com.yona.plugin.services.utils.AppConstant;
 import com.yona.plugin.services.utils.Logger;
 import com.yona.plugin.services.utils.AppUtils;
+import com.yona.plugin.services.utils.TimestampCodec;
 
 import nu.yona.app.R;
 
@@ -57,9 +61,19 @@ public class YonaReceiver extends BroadcastReceiver
 			case Intent.ACTION_SCREEN_OFF:
 				handleScreenOffBroadcast(context);
 				break;
+			case Intent.ACTION_TIMEZONE_CHANGED:
+				TimestampCodec.getInstance().invalidate();
+				break;
 			case AppConstant.WAKE_UP:
 				handleWakeUpAlarm(context);
 				break;
+			case Intent.ACTION_POWER_CONNECTED:
+				APIManager.getInstance().getActivityManager(context).onChargingStarted();
+				break;
+			case AppConstant.RETRY_UPLOAD:
+				Logger.logi(YonaReceiver.class, "RETRY_UPLOAD");
+				APIManager.getInstance().getActivityManager(context).postAllDBActivities();
+				break;
             case PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED:
 				handleDeviceDozeMode(context);
 				break;
@@ -90,6 +104,7 @@ public class YonaReceiver extends BroadcastReceiver
 	{
 		Logger.logi(YonaReceiver.class, "ACTION_BOOT_COMPLETED");
 		startService(context);
+		new UploadRetryScheduler(context).restore();
 	}
 
 	private void handleScreenOnBroadcast(Context context)
@@ -102,7 +117,7 @@ public class YonaReceiver extends BroadcastReceiver
 	private void handleScreenOffBroadcast(Context context)
 	{
 		Logger.logi(YonaReceiver.class, "ACTION_SCREEN_OFF");
-		AppUtils.setNullScheduler();
+		MonitoringScheduler.getInstance().suspend();
 		AppUtils.sendLogToServer(context, AppConstant.ONE_SECOND);
 	}
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.service;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.yona.plugin.services.api.manager.dao.AppDictionaryDAO;
+import com.yona.plugin.services.api.store.PackageNameResolver;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps package names to small integer ids and back, so the monitoring loop can compare
+ * and store applications without handling package name strings.
+ * The ids are the keys of the apps table, which activity rows reference. The table is read once and
+ * cached in both directions, after that only a package that was never seen before touches the database.
+ */
+public class AppDictionary implements PackageNameResolver
+{
+	/**
+	 * The id used when no application is in the foreground. It is never stored in the apps table.
+	 */
+	public static final int NO_APP_ID = 0;
+
+	/**
+	 * The package name used when no application is in the foreground.
+	 */
+	public static final String NO_APP = "NULL";
+
+	private static AppDictionary instance;
+
+	private final AppDictionaryDAO appDictionaryDAO;
+	private final Map<String, Integer> ids = new HashMap<>();
+	private final SparseArray<String> packageNames;
+
+	/**
+	 * Gets instance.
+	 *
+	 * @param context the context
+	 * @return the instance
+	 */
+	public static synchronized AppDictionary getInstance(Context context)
+	{
+		if (instance == null)
+		{
+			instance = new AppDictionary(new AppDictionaryDAO(context.getApplicationContext()));
+		}
+		return instance;
+	}
+
+	private AppDictionary(AppDictionaryDAO appDictionaryDAO)
+	{
+		this.appDictionaryDAO = appDictionaryDAO;
+		packageNames = appDictionaryDAO.getApps();
+		for (int i = 0; i < packageNames.size(); i++)
+		{
+			ids.put(packageNames.valueAt(i), packageNames.keyAt(i));
+		}
+		packageNames.put(NO_APP_ID, NO_APP);
+		ids.put(NO_APP, NO_APP_ID);
+	}
+
+	/**
+	 * Gets the id of a package, storing the package the first time it is seen.
+	 *
+	 * @param packageName the package name
+	 * @return the id
+	 */
+	public synchronized int getId(String packageName)
+	{
+		Integer id = ids.get(packageName);
+		if (id == null)
+		{
+			id = appDictionaryDAO.saveApp(packageName);
+			packageNames.put(id, packageName);
+			ids.put(packageName, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the package name of an id.
+	 *
+	 * @param id the id
+	 * @return the package name, or {@link #NO_APP} if the id is unknown
+	 */
+	@Override
+	public synchronized String getPackageName(int id)
+	{
+		return packageNames.get(id, NO_APP);
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.service;
+
+import android.annotation.TargetApi;
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageStats;
+import android.app.usage.UsageStatsManager;
+import android.content.Context;
+import android.os.Build;
+
+import com.yona.plugin.services.utils.AppConstant;
+
+import java.util.List;
+
+/**
+ * Tracks the foreground application by reading the usage event stream incrementally.
+ * Every call only processes the events recorded since the previous call, so the cost of a
+ * monitoring tick no longer depends on the number of installed applications, and every switch
+ * since the previous call is reported, however long the monitoring loop waited.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ForegroundAppDetector
+{
+	/**
+	 * Receives the foreground switches.
+	 */
+	public interface ForegroundChangeListener
+	{
+		/**
+		 * Called for every switch of the foreground application, in the order they happened.
+		 *
+		 * @param applicationId the application now in the foreground, or {@link AppDictionary#NO_APP_ID}
+		 * @param since         the time in milliseconds since the epoch of the switch
+		 */
+		void onForegroundChanged(int applicationId, long since);
+	}
+
+	// The window searched with the usage statistics for the foreground app when the cursor is (re)initialised.
+	private static final long INITIAL_LOOKBACK = AppConstant.ONE_SECOND * AppConstant.ONE_SECOND;
+
+	// Events can be reported slightly after their time stamp, so the cursor never advances to exactly 'now'.
+	private static final long LATE_EVENT_MARGIN = AppConstant.ONE_SECOND;
+
+	private final UsageStatsManager usageStatsManager;
+	private final AppDictionary appDictionary;
+	private final UsageEvents.Event event = new UsageEvents.Event();
+	private long cursor;
+	private long lastEventTime;
+	private int foregroundAppId = AppDictionary.NO_APP_ID;
+	private int reportedAppId = AppDictionary.NO_APP_ID;
+
+	/**
+	 * Instantiates a new Foreground app detector.
+	 *
+	 * @param context the context
+	 */
+	public ForegroundAppDetector(Context context)
+	{
+		usageStatsManager = (UsageStatsManager) context.getSystemService(Context.USAGE_STATS_SERVICE);
+		appDictionary = AppDictionary.getInstance(context);
+	}
+
+	/**
+	 * Reads the foreground switches since the previous call. The first call, and the first call after the
+	 * wall clock was set back, reports the application that was used last as the one in the foreground.
+	 *
+	 * @param listener the listener that receives the switches
+	 * @return the application id, or {@link AppDictionary#NO_APP_ID} when no application is in the foreground
+	 */
+	public int readForegroundChanges(ForegroundChangeListener listener)
+	{
+		long now = System.currentTimeMillis();
+		if (cursor == 0 || now < cursor)
+		{
+			// First query, or the wall clock was set back: rebuild the state from the usage statistics,
+			// the event stream may not go back to the time the current app came to the foreground.
+			lastEventTime = 0;
+			foregroundAppId = AppDictionary.NO_APP_ID;
+			reportedAppId = AppDictionary.NO_APP_ID;
+			cursor = seed(now, listener);
+		}
+		UsageEvents events = usageStatsManager.queryEvents(cursor, now);
+		if (events != null)
+		{
+			while (events.hasNextEvent())
+			{
+				events.getNextEvent(event);
+				processEvent(listener);
+			}
+		}
+		if (foregroundAppId != reportedAppId)
+		{
+			// The last application went to the background and no other one came to the foreground.
+			report(listener, foregroundAppId, lastEventTime);
+		}
+		cursor = Math.max(lastEventTime + 1, now - LATE_EVENT_MARGIN);
+		return foregroundAppId;
+	}
+
+	/**
+	 * Reports the application used last as the one in the foreground.
+	 *
+	 * @return the time to read the events from
+	 */
+	private long seed(long now, ForegroundChangeListener listener)
+	{
+		List<UsageStats> usageStats = usageStatsManager.queryUsageStats(UsageStatsManager.INTERVAL_DAILY, now - INITIAL_LOOKBACK, now);
+		UsageStats lastUsed = null;
+		if (usageStats != null)
+		{
+			for (UsageStats stats : usageStats)
+			{
+				if (lastUsed == null || stats.getLastTimeUsed() > lastUsed.getLastTimeUsed())
+				{
+					lastUsed = stats;
+				}
+			}
+		}
+		if (lastUsed == null || lastUsed.getLastTimeUsed() > now)
+		{
+			return now - LATE_EVENT_MARGIN;
+		}
+		foregroundAppId = appDictionary.getId(lastUsed.getPackageName());
+		report(listener, foregroundAppId, lastUsed.getLastTimeUsed());
+		// Events from then on are read, a switch right after the statistics were updated is not missed.
+		return lastUsed.getLastTimeUsed() + 1;
+	}
+
+	private void processEvent(ForegroundChangeListener listener)
+	{
+		switch (event.getEventType())
+		{
+			case UsageEvents.Event.MOVE_TO_FOREGROUND:
+				foregroundAppId = appDictionary.getId(event.getPackageName());
+				lastEventTime = event.getTimeStamp();
+				// An application that switches between its own activities stays in the foreground.
+				if (foregroundAppId != reportedAppId)
+				{
+					report(listener, foregroundAppId, lastEventTime);
+				}
+				break;
+			case UsageEvents.Event.MOVE_TO_BACKGROUND:
+				if (appDictionary.getPackageName(foregroundAppId).equals(event.getPackageName()))
+				{
+					// Only reported if no application follows it in the events read now.
+					foregroundAppId = AppDictionary.NO_APP_ID;
+					lastEventTime = event.getTimeStamp();
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void report(ForegroundChangeListener listener, int applicationId, long since)
+	{
+		reportedAppId = applicationId;
+		listener.onForegroundChanged(applicationId, since);
+	}
+
+	/**
+	 * Forgets the cursor, so the next query rebuilds the foreground state from the usage statistics.
+	 */
+	public void reset()
+	{
+		cursor = 0;
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.service;
+
+import android.os.SystemClock;
+
+import com.yona.plugin.services.utils.AppConstant;
+import com.yona.plugin.services.utils.Logger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the app monitoring loop. The interval backs off while the same app stays in the foreground,
+ * and the loop is suspended completely while the screen is off.
+ * While the loop runs, the task is also asked to flush its buffered work every session flush interval,
+ * so buffered sessions are written even when the foreground app does not change for a long time.
+ */
+public class MonitoringScheduler
+{
+	/**
+	 * The work done by the monitoring loop.
+	 */
+	public interface MonitoringTask
+	{
+		/**
+		 * Runs one monitoring tick.
+		 *
+		 * @return true if the foreground app changed since the previous tick
+		 */
+		boolean onTick();
+
+		/**
+		 * Called on the monitoring thread after the loop has been suspended.
+		 */
+		void onSuspend();
+
+		/**
+		 * Called on the monitoring thread every flush interval while the loop runs.
+		 */
+		void onFlush();
+	}
+
+	private static final long ONE_HOUR = 60L * 60L * AppConstant.ONE_SECOND;
+
+	private static MonitoringScheduler instance;
+
+	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> nextTick;
+	private ScheduledFuture<?> nextFlush;
+	private MonitoringTask task;
+	private boolean suspended;
+	private int generation;
+	private long interval = AppConstant.MONITORING_MIN_INTERVAL;
+
+	private long totalWakeups;
+	private long wakeupsInWindow;
+	private long wakeupsLastHour = -1;
+	private long windowStart = SystemClock.elapsedRealtime();
+
+	/**
+	 * Gets instance.
+	 *
+	 * @return the instance
+	 */
+	public static synchronized MonitoringScheduler getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new MonitoringScheduler();
+		}
+		return instance;
+	}
+
+	private MonitoringScheduler()
+	{
+	}
+
+	/**
+	 * Starts the monitoring loop for the given task, or resumes it if it was suspended.
+	 *
+	 * @param task the task
+	 */
+	public synchronized void start(MonitoringTask task)
+	{
+		if (this.task == task && !suspended && nextTick != null)
+		{
+			return; // Already running
+		}
+		this.task = task;
+		restart();
+	}
+
+	/**
+	 * Resumes a suspended monitoring loop.
+	 */
+	public synchronized void resume()
+	{
+		if (task == null || !suspended)
+		{
+			return;
+		}
+		restart();
+	}
+
+	/**
+	 * Suspends the monitoring loop until it is resumed or started again.
+	 */
+	public synchronized void suspend()
+	{
+		if (task == null || suspended)
+		{
+			return;
+		}
+		Logger.logi(MonitoringScheduler.class, "Suspend monitoring");
+		suspended = true;
+		cancelNextTick();
+		cancelNextFlush();
+		final MonitoringTask suspendedTask = task;
+		getExecutor().execute(suspendedTask::onSuspend);
+	}
+
+	/**
+	 * Stops the monitoring loop and releases its thread.
+	 */
+	public synchronized void stop()
+	{
+		cancelNextTick();
+		cancelNextFlush();
+		task = null;
+		suspended = false;
+		if (executor != null)
+		{
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Is suspended boolean.
+	 *
+	 * @return true if the loop is suspended
+	 */
+	public synchronized boolean isSuspended()
+	{
+		return suspended;
+	}
+
+	/**
+	 * Gets the delay in milliseconds until the next tick.
+	 *
+	 * @return the current interval
+	 */
+	public synchronized long getCurrentInterval()
+	{
+		return interval;
+	}
+
+	/**
+	 * Gets the number of ticks since the process started.
+	 *
+	 * @return the total wakeups
+	 */
+	public synchronized long getTotalWakeups()
+	{
+		return totalWakeups;
+	}
+
+	/**
+	 * Gets the number of ticks in the last complete hour, or an estimate based on the current hour
+	 * if no hour has been completed yet.
+	 *
+	 * @return the wakeups per hour
+	 */
+	public synchronized long getWakeupsPerHour()
+	{
+		rollWindow();
+		if (wakeupsLastHour >= 0)
+		{
+			return wakeupsLastHour;
+		}
+		long elapsed = Math.max(SystemClock.elapsedRealtime() - windowStart, AppConstant.ONE_SECOND);
+		return wakeupsInWindow * ONE_HOUR / elapsed;
+	}
+
+	private void restart()
+	{
+		suspended = false;
+		interval = AppConstant.MONITORING_MIN_INTERVAL;
+		cancelNextTick();
+		cancelNextFlush();
+		generation++;
+		scheduleNextTick(0);
+		final int flushGeneration = generation;
+		nextFlush = getExecutor().scheduleWithFixedDelay(() -> flush(flushGeneration), AppConstant.SESSION_FLUSH_INTERVAL,
+				AppConstant.SESSION_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	private void scheduleNextTick(long delay)
+	{
+		final int tickGeneration = generation;
+		nextTick = getExecutor().schedule(() -> tick(tickGeneration), delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void tick(int tickGeneration)
+	{
+		MonitoringTask currentTask;
+		synchronized (this)
+		{
+			if (tickGeneration != generation || suspended || task == null)
+			{
+				return;
+			}
+			currentTask = task;
+		}
+		boolean changed = false;
+		try
+		{
+			changed = currentTask.onTick();
+		}
+		catch (Exception e)
+		{
+			Logger.loge(MonitoringScheduler.class, e.getMessage());
+		}
+		synchronized (this)
+		{
+			recordWakeup();
+			if (tickGeneration != generation || suspended || task == null)
+			{
+				return;
+			}
+			interval = changed ? AppConstant.MONITORING_MIN_INTERVAL : Math.min(interval * 2, AppConstant.MONITORING_MAX_INTERVAL);
+			scheduleNextTick(interval);
+		}
+	}
+
+	private void flush(int flushGeneration)
+	{
+		MonitoringTask currentTask;
+		synchronized (this)
+		{
+			if (flushGeneration != generation || suspended || task == null)
+			{
+				return;
+			}
+			currentTask = task;
+		}
+		try
+		{
+			currentTask.onFlush();
+		}
+		catch (Exception e)
+		{
+			Logger.loge(MonitoringScheduler.class, e.getMessage());
+		}
+	}
+
+	private void recordWakeup()
+	{
+		rollWindow();
+		totalWakeups++;
+		wakeupsInWindow++;
+	}
+
+	private void rollWindow()
+	{
+		long now = SystemClock.elapsedRealtime();
+		if (now - windowStart >= ONE_HOUR)
+		{
+			// A window that ended more than an hour ago had no wakeups in the last hour.
+			wakeupsLastHour = (now - windowStart >= 2 * ONE_HOUR) ? 0 : wakeupsInWindow;
+			wakeupsInWindow = 0;
+			windowStart = now;
+		}
+	}
+
+	private void cancelNextTick()
+	{
+		if (nextTick != null)
+		{
+			nextTick.cancel(false);
+			nextTick = null;
+		}
+	}
+
+	private void cancelNextFlush()
+	{
+		if (nextFlush != null)
+		{
+			nextFlush.cancel(false);
+			nextFlush = null;
+		}
+	}
+
+	private ScheduledExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newSingleThreadScheduledExecutor();
+		}
+		return executor;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.service;
+
+import android.os.SystemClock;
+
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.utils.AppConstant;
+import com.yona.plugin.services.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffers closed app sessions in memory before they are appended to the activity store.
+ * Sessions shorter than the minimum duration are dropped, and a session of the same application
+ * that starts within the merge gap of the previous one is merged into it. This way quickly switching
+ * between an app and the launcher results in a single activity row. Only buffered sessions are merged,
+ * a written session may be uploaded already.
+ */
+public class SessionCoalescer
+{
+	private final ActivityStore activityStore;
+	private final long mergeGap;
+	private final long minDuration;
+	private final int flushSize;
+	private final long flushInterval;
+
+	private final List<PendingSession> pendingSessions = new ArrayList<>();
+	private PendingSession tail;
+	private long oldestPendingSince;
+
+	/**
+	 * Instantiates a new Session coalescer with the default configuration.
+	 *
+	 * @param activityStore the activity store
+	 */
+	public SessionCoalescer(ActivityStore activityStore)
+	{
+		this(activityStore, AppConstant.SESSION_MERGE_GAP, AppConstant.SESSION_MIN_DURATION, AppConstant.SESSION_FLUSH_SIZE, AppConstant.SESSION_FLUSH_INTERVAL);
+	}
+
+	/**
+	 * Instantiates a new Session coalescer.
+	 *
+	 * @param activityStore the activity store
+	 * @param mergeGap      the largest gap in milliseconds between two sessions of the same application that are merged
+	 * @param minDuration   sessions shorter than this many milliseconds are dropped
+	 * @param flushSize     the number of buffered sessions that triggers a flush
+	 * @param flushInterval the number of milliseconds a session may stay buffered before a flush is triggered
+	 */
+	public SessionCoalescer(ActivityStore activityStore, long mergeGap, long minDuration, int flushSize, long flushInterval)
+	{
+		this.activityStore = activityStore;
+		this.mergeGap = mergeGap;
+		this.minDuration = minDuration;
+		this.flushSize = flushSize;
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Adds a closed session.
+	 *
+	 * @param applicationId the application id, see {@link AppDictionary}
+	 * @param startTime     the start time in milliseconds since the epoch
+	 * @param endTime       the end time in milliseconds since the epoch
+	 * @return true if buffered sessions were appended to the activity store
+	 */
+	public synchronized boolean add(int applicationId, long startTime, long endTime)
+	{
+		if (endTime - startTime < minDuration)
+		{
+			return false;
+		}
+		if (tail != null && tail.applicationId == applicationId && startTime - tail.endTime <= mergeGap)
+		{
+			tail.endTime = Math.max(tail.endTime, endTime);
+		}
+		else
+		{
+			tail = new PendingSession(applicationId, startTime, endTime);
+			if (pendingSessions.isEmpty())
+			{
+				oldestPendingSince = SystemClock.elapsedRealtime();
+			}
+			pendingSessions.add(tail);
+		}
+		if (pendingSessions.size() >= flushSize || SystemClock.elapsedRealtime() - oldestPendingSince >= flushInterval)
+		{
+			return flushPending();
+		}
+		return false;
+	}
+
+	/**
+	 * Appends the buffered sessions to the activity store if the oldest one was buffered for the flush interval.
+	 *
+	 * @return true if buffered sessions were appended to the activity store
+	 */
+	public synchronized boolean flushIfDue()
+	{
+		if (pendingSessions.isEmpty() || SystemClock.elapsedRealtime() - oldestPendingSince < flushInterval)
+		{
+			return false;
+		}
+		return flushPending();
+	}
+
+	/**
+	 * Appends all buffered sessions to the activity store at once.
+	 */
+	public synchronized void flush()
+	{
+		flushPending();
+	}
+
+	private boolean flushPending()
+	{
+		if (pendingSessions.isEmpty())
+		{
+			return false;
+		}
+		List<ActivityRecord> activities = new ArrayList<>(pendingSessions.size());
+		for (PendingSession session : pendingSessions)
+		{
+			activities.add(new ActivityRecord(session.applicationId, session.startTime, session.endTime));
+		}
+		try
+		{
+			activityStore.append(activities);
+			pendingSessions.clear();
+			// Sessions added from now on are never merged into the written ones.
+			tail = null;
+			return true;
+		}
+		catch (Exception e)
+		{
+			Logger.loge(SessionCoalescer.class, e.getMessage());
+			return false;
+		}
+	}
+
+	private static class PendingSession
+	{
+		private final int applicationId;
+		private final long startTime;
+		private long endTime;
+
+		private PendingSession(int applicationId, long startTime, long endTime)
+		{
+			this.applicationId = applicationId;
+			this.startTime = startTime;
+			this.endTime = endTime;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.service;
+
+import android.os.SystemClock;
+
+import com.yona.plugin.services.api.manager.ActivityManager;
+
+/**
+ * Keeps track of the app session in progress. A session is handed to the activity manager
+ * exactly once, when it is closed.
+ * The duration of a session is measured with the monotonic elapsed realtime clock, and the wall clock
+ * is only read once as the anchor of its start time, so setting the clock during a session does not
+ * change its duration. Nothing is allocated while the same app stays in the foreground.
+ * A session starts at the time the app came to the foreground, rather than when the switch was detected,
+ * but never before the previous session was closed or the tracker was created.
+ */
+public class SessionTracker
+{
+	private static final int NO_SESSION = -1;
+
+	private final ActivityManager activityManager;
+	private int applicationId = NO_SESSION;
+	private long startElapsedRealtime;
+	private long startWallClock;
+	private long closedElapsedRealtime = SystemClock.elapsedRealtime();
+
+	/**
+	 * Instantiates a new Session tracker.
+	 *
+	 * @param activityManager the activity manager that stores closed sessions
+	 */
+	public SessionTracker(ActivityManager activityManager)
+	{
+		this.activityManager = activityManager;
+	}
+
+	/**
+	 * Is open boolean.
+	 *
+	 * @return true if a session is in progress
+	 */
+	public synchronized boolean isOpen()
+	{
+		return applicationId != NO_SESSION;
+	}
+
+	/**
+	 * Gets the application of the session in progress.
+	 *
+	 * @return the application id, see {@link AppDictionary}
+	 */
+	public synchronized int getApplicationId()
+	{
+		return applicationId;
+	}
+
+	/**
+	 * Closes the session in progress, if any, and starts a new one.
+	 *
+	 * @param applicationId the id of the application that is now in the foreground
+	 * @param startTime     the time in milliseconds since the epoch the application came to the foreground
+	 */
+	public synchronized void open(int applicationId, long startTime)
+	{
+		long nowElapsedRealtime = SystemClock.elapsedRealtime();
+		long nowWallClock = System.currentTimeMillis();
+		long switchElapsedRealtime = nowElapsedRealtime - Math.max(nowWallClock - startTime, 0);
+		// The previous session ends where this one starts, even if the switch was detected later.
+		close(Math.max(switchElapsedRealtime, startElapsedRealtime));
+		this.applicationId = applicationId;
+		this.startElapsedRealtime = Math.max(switchElapsedRealtime, closedElapsedRealtime);
+		this.startWallClock = nowWallClock - (nowElapsedRealtime - this.startElapsedRealtime);
+	}
+
+	/**
+	 * Closes the session in progress. Calling this again without opening a new session does nothing.
+	 */
+	public synchronized void close()
+	{
+		close(SystemClock.elapsedRealtime());
+	}
+
+	private void close(long endElapsedRealtime)
+	{
+		if (applicationId == NO_SESSION)
+		{
+			return;
+		}
+		int closedApplicationId = applicationId;
+		applicationId = NO_SESSION;
+		closedElapsedRealtime = endElapsedRealtime;
+
+		long duration = endElapsedRealtime - startElapsedRealtime;
+		if (closedApplicationId != AppDictionary.NO_APP_ID && duration > 0)
+		{
+			activityManager.postActivityToDB(closedApplicationId, startWallClock, startWallClock + duration);
+		}
+	}
+}
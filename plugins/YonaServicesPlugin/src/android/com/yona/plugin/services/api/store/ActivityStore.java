@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Stores the activities until the server acknowledged them. Every activity gets an id when it is appended,
+ * ids increase in the order the activities were appended, and batches are ranges of ids.
+ * An activity with the same application and start time as a stored one replaces it, and gets a new id.
+ * All methods can be called from any thread.
+ */
+public interface ActivityStore
+{
+    /**
+     * Receives the activities of a batch.
+     */
+    interface ActivityReader
+    {
+        /**
+         * Receives an activity.
+         *
+         * @param packageName the package name of the application
+         * @param startTime   the start time in milliseconds since the epoch
+         * @param endTime     the end time in milliseconds since the epoch
+         * @throws IOException the io exception of the reader
+         */
+        void onActivity(String packageName, long startTime, long endTime) throws IOException;
+    }
+
+    /**
+     * Appends activities. The activities may be written after this returns, see {@link #flush()}.
+     *
+     * @param activities the activities
+     */
+    void append(List<ActivityRecord> activities);
+
+    /**
+     * Waits until the activities appended before can be read.
+     */
+    void flush();
+
+    /**
+     * Reads the next batch of activities, in order of their id.
+     *
+     * @param afterId only activities with a larger id are included
+     * @param limit   the maximum number of activities
+     * @return the batch, or null if there are no more activities
+     */
+    ActivityBatch readBatch(long afterId, int limit);
+
+    /**
+     * Reads the activities of a batch, in order of their id. Activities that were acknowledged or replaced
+     * since the batch was read are skipped.
+     *
+     * @param batch  the batch
+     * @param reader the reader
+     * @throws IOException the io exception of the reader or the store
+     */
+    void readActivities(ActivityBatch batch, ActivityReader reader) throws IOException;
+
+    /**
+     * Acknowledges the activities of a batch, they are removed and never read again.
+     *
+     * @param firstId the id of the first activity of the batch
+     * @param lastId  the id of the last activity of the batch
+     */
+    void ack(long firstId, long lastId);
+
+    /**
+     * Counts the stored activities. It is called after every append, so it does not read the activities.
+     *
+     * @return the number of activities that are not acknowledged
+     */
+    long count();
+
+    /**
+     * Gets the end time of the oldest stored activity.
+     *
+     * @return the end time in milliseconds since the epoch, or 0 if no activities are stored
+     */
+    long oldestTimestamp();
+
+    /**
+     * Releases the resources of the store, it cannot be used afterwards.
+     */
+    void close();
+}
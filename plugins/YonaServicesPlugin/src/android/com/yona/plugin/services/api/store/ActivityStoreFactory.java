@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import android.content.Context;
+
+import com.yona.plugin.services.api.db.DatabaseHelper;
+import com.yona.plugin.services.api.manager.dao.ActivityTrackerDAO;
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.api.service.AppDictionary;
+import com.yona.plugin.services.enums.ActivityStoreType;
+import com.yona.plugin.services.state.SharedPreference;
+import com.yona.plugin.services.utils.AppConstant;
+import com.yona.plugin.services.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opens the activity store of the app. The store that was used last is kept in the preferences; when another
+ * store is selected, the activities that were not uploaded yet are moved to it the first time it is opened.
+ * The in-memory store is never used by the app, it loses its activities when the process ends.
+ */
+public class ActivityStoreFactory
+{
+    // The number of activities moved at once from the previous store.
+    private static final int MOVE_BATCH_SIZE = 500;
+
+    private ActivityStoreFactory()
+    {
+    }
+
+    /**
+     * Opens the activity store selected in the preferences, moving the activities of the previous store to it
+     * when the selection changed. When the file log cannot be opened, the database is used instead.
+     *
+     * @param context     the context
+     * @param preferences the preferences holding the selected store and the store used last
+     * @return the activity store
+     */
+    public static ActivityStore open(Context context, SharedPreference preferences)
+    {
+        ActivityStoreType type = preferences.getActivityStoreType();
+        ActivityStore store;
+        try
+        {
+            store = create(context, type);
+        }
+        catch (IOException e)
+        {
+            Logger.loge(ActivityStoreFactory.class, "Cannot open the " + type + " activity store, using the database: " + e.getMessage());
+            type = ActivityStoreType.SQLITE;
+            store = createDatabaseStore(context);
+        }
+        ActivityStoreType previousType = preferences.getActivityStoreInUse();
+        if (previousType != type)
+        {
+            try
+            {
+                ActivityStore previousStore = create(context, previousType);
+                try
+                {
+                    moveActivities(previousStore, store, AppDictionary.getInstance(context));
+                }
+                finally
+                {
+                    previousStore.close();
+                }
+            }
+            catch (Exception e)
+            {
+                // The store in use is not changed, so the move is tried again the next time.
+                Logger.loge(ActivityStoreFactory.class, "Cannot move the activities of the " + previousType + " activity store: " + e.getMessage());
+                return store;
+            }
+        }
+        preferences.setActivityStoreInUse(type);
+        return store;
+    }
+
+    /**
+     * Moves the activities of one store to another, batch by batch. A batch is acknowledged in the source once
+     * it is stored in the target, so a move that is interrupted can be continued.
+     *
+     * @param source       the store to move the activities from
+     * @param target       the store to move the activities to
+     * @param applications the dictionary of the application ids of the target
+     * @return the number of activities moved
+     * @throws IOException the io exception of the source
+     */
+    static long moveActivities(ActivityStore source, final ActivityStore target, final AppDictionary applications) throws IOException
+    {
+        long moved = 0;
+        ActivityBatch batch;
+        while ((batch = source.readBatch(0, MOVE_BATCH_SIZE)) != null)
+        {
+            final List<ActivityRecord> activities = new ArrayList<>(batch.getSize());
+            source.readActivities(batch, (packageName, startTime, endTime) ->
+                    activities.add(new ActivityRecord(applications.getId(packageName), startTime, endTime)));
+            target.append(activities);
+            target.flush();
+            source.ack(batch.getFirstId(), batch.getLastId());
+            moved += activities.size();
+        }
+        if (moved > 0)
+        {
+            Logger.logi(ActivityStoreFactory.class, "Moved " + moved + " activities to the new activity store");
+        }
+        return moved;
+    }
+
+    private static ActivityStore create(Context context, ActivityStoreType type) throws IOException
+    {
+        switch (type)
+        {
+            case FILE_LOG:
+                return new FileLogActivityStore(new File(context.getFilesDir(), AppConstant.ACTIVITY_LOG_DIRECTORY),
+                        AppDictionary.getInstance(context), AppConstant.ACTIVITY_LOG_SEGMENT_RECORDS);
+            case SQLITE:
+                return createDatabaseStore(context);
+            default:
+                throw new IllegalArgumentException("The " + type + " activity store cannot be used by the app");
+        }
+    }
+
+    private static ActivityStore createDatabaseStore(Context context)
+    {
+        return new SqliteActivityStore(new ActivityTrackerDAO(DatabaseHelper.getInstance(context)));
+    }
+}
@@ -0,0 +1,769 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.api.service.AppDictionary;
+import com.yona.plugin.services.utils.Logger;
+import com.yona.plugin.services.utils.YonaRuntimeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Appends the activities as fixed size binary records to segment files in a directory, without an index or
+ * transactions, for the frequent writes of the monitoring loop. A segment file is named after the id of its
+ * first record, the id of a record follows from its position. A segment holds a fixed number of records,
+ * then the next one is started.
+ * Segments are created at their full size and mapped into memory, so appending a record copies its 24 bytes
+ * into the mapping without a system call. The mapped pages belong to the kernel, so appended records survive
+ * the process being killed or its task being removed. Only the records synced to disk by {@link #flush()}, or
+ * when their segment filled up, survive a crash of the device or a loss of power; the records appended since
+ * can be lost, and as the kernel writes pages back in any order, a record spanning two pages can be written
+ * partly. A record ends with a checksum of its fields and its application id, written last, is never
+ * {@link AppDictionary#NO_APP_ID}, so when the store is opened again the records of a segment end at the first
+ * record without an application id or with a wrong checksum; the records after it are dropped as well.
+ * Acknowledgements are not synced, after a crash of the device acknowledged activities can be read again.
+ * Closing the store unmaps the segments where the runtime allows it; a closed store cannot be used anymore.
+ * An activity with the same application and start time as one of the last appended activities is dropped
+ * once that one is acknowledged, as the server has an activity with its start time already.
+ * Acknowledged id ranges are appended to a separate file, and a segment is deleted once all its records are
+ * acknowledged, oldest first. The newest segment is always kept, so the ids continue after a restart.
+ */
+public class FileLogActivityStore implements ActivityStore
+{
+    /**
+     * The size of a record: the application id, the start time, the end time and the checksum.
+     */
+    public static final int RECORD_SIZE = 4 + 8 + 8 + 4;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String ACKS_FILE = "acks";
+    private static final String ACKS_TEMP_FILE = "acks.tmp";
+    private static final int ACK_SIZE = 8 + 8;
+    // The acks file is rewritten with the ranges that are still needed once it has this many entries.
+    private static final int MAX_ACK_ENTRIES = 1024;
+    // The number of last appended activities looked at for an activity to replace.
+    private static final int RECENT_ACTIVITIES = 64;
+
+    private final File directory;
+    private final PackageNameResolver packageNames;
+    private final int segmentRecords;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final AcknowledgedRanges acknowledged = new AcknowledgedRanges();
+    private final ByteBuffer ackBuffer = ByteBuffer.allocate(ACK_SIZE);
+    private final int[] recentApplicationIds = new int[RECENT_ACTIVITIES];
+    private final long[] recentStartTimes = new long[RECENT_ACTIVITIES];
+    private final long[] recentIds = new long[RECENT_ACTIVITIES];
+
+    private FileChannel acksChannel;
+    private int ackEntries;
+    private long nextId = 1;
+    private long unacknowledged;
+    private int recentCount;
+    private int recentNext;
+    private boolean closed;
+
+    /**
+     * Opens the store in a directory, creating the directory if needed.
+     *
+     * @param directory      the directory
+     * @param packageNames   the resolver of the application ids
+     * @param segmentRecords the number of records of a segment
+     * @throws IOException the io exception
+     */
+    public FileLogActivityStore(File directory, PackageNameResolver packageNames, int segmentRecords) throws IOException
+    {
+        this.directory = directory;
+        this.packageNames = packageNames;
+        this.segmentRecords = segmentRecords;
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create " + directory);
+        }
+        openSegments();
+        openAcks();
+        deleteAcknowledgedSegments();
+        for (Segment segment : segments.values())
+        {
+            unacknowledged += segment.records;
+        }
+        unacknowledged -= acknowledged.count();
+        rewriteAcks();
+    }
+
+    private void openSegments() throws IOException
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_SUFFIX))
+                {
+                    long firstId = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(firstId, new Segment(firstId, file, segmentRecords));
+                }
+            }
+        }
+        if (!segments.isEmpty())
+        {
+            Segment last = segments.lastEntry().getValue();
+            // Appends continue after the last complete record, they must not be followed by records of before a crash.
+            last.clearAfterRecords();
+            nextId = last.firstId + last.records;
+        }
+    }
+
+    private void openAcks() throws IOException
+    {
+        acksChannel = new RandomAccessFile(new File(directory, ACKS_FILE), "rw").getChannel();
+        ByteBuffer acks = ByteBuffer.allocate((int) (acksChannel.size() / ACK_SIZE * ACK_SIZE));
+        readFully(acksChannel, acks, 0);
+        acks.flip();
+        while (acks.remaining() >= ACK_SIZE)
+        {
+            long firstId = acks.getLong();
+            long lastId = acks.getLong();
+            if (firstId <= lastId && lastId < nextId)
+            {
+                addAcknowledged(firstId, lastId);
+            }
+        }
+        acknowledged.removeBelow(getFirstId());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Activities with the application id {@link AppDictionary#NO_APP_ID}, which marks free space, are dropped.
+     */
+    @Override
+    public synchronized void append(List<ActivityRecord> activities)
+    {
+        checkOpen();
+        try
+        {
+            for (ActivityRecord activity : activities)
+            {
+                if (activity.getApplicationId() == AppDictionary.NO_APP_ID)
+                {
+                    Logger.loge(FileLogActivityStore.class, "Dropped an activity without application");
+                    continue;
+                }
+                int recent = findRecent(activity.getApplicationId(), activity.getStartTime());
+                if (recent >= 0 && acknowledged.contains(recentIds[recent]))
+                {
+                    // The server has an activity with this start time already, it would get it twice.
+                    Logger.loge(FileLogActivityStore.class, "Dropped an activity that replaces an uploaded one");
+                    continue;
+                }
+                Segment segment = getWritableSegment();
+                int position = segment.records * RECORD_SIZE;
+                segment.buffer.putLong(position + 4, activity.getStartTime());
+                segment.buffer.putLong(position + 12, activity.getEndTime());
+                segment.buffer.putInt(position + 20, checksum(activity.getApplicationId(), activity.getStartTime(), activity.getEndTime()));
+                // Written last, it makes the record valid.
+                segment.buffer.putInt(position, activity.getApplicationId());
+                segment.records++;
+                // Only replaced once the activity that replaces it is written.
+                replace(recent, activity.getApplicationId(), activity.getStartTime(), nextId);
+                nextId++;
+                unacknowledged++;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new YonaRuntimeException("Cannot append activities: " + e.getMessage());
+        }
+    }
+
+    private Segment getWritableSegment() throws IOException
+    {
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || segment.records == segment.capacity)
+        {
+            if (segment != null)
+            {
+                segment.buffer.force();
+            }
+            segment = new Segment(nextId, new File(directory, nextId + SEGMENT_SUFFIX), segmentRecords);
+            segments.put(nextId, segment);
+        }
+        return segment;
+    }
+
+    private int findRecent(int applicationId, long startTime)
+    {
+        for (int i = 0; i < recentCount; i++)
+        {
+            if (recentApplicationIds[i] == applicationId && recentStartTimes[i] == startTime)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void replace(int recent, int applicationId, long startTime, long id) throws IOException
+    {
+        if (recent >= 0)
+        {
+            acknowledge(recentIds[recent], recentIds[recent]);
+            recentIds[recent] = id;
+            return;
+        }
+        recentApplicationIds[recentNext] = applicationId;
+        recentStartTimes[recentNext] = startTime;
+        recentIds[recentNext] = id;
+        recentNext = (recentNext + 1) % RECENT_ACTIVITIES;
+        recentCount = Math.min(recentCount + 1, RECENT_ACTIVITIES);
+    }
+
+    /**
+     * Syncs the records of the newest segment to disk, the older segments were synced when they were full.
+     */
+    @Override
+    public synchronized void flush()
+    {
+        checkOpen();
+        if (!segments.isEmpty())
+        {
+            segments.lastEntry().getValue().buffer.force();
+        }
+    }
+
+    @Override
+    public ActivityBatch readBatch(long afterId, int limit)
+    {
+        Records records = new Records(limit);
+        synchronized (this)
+        {
+            checkOpen();
+            read(afterId + 1, nextId - 1, records);
+        }
+        if (records.size == 0)
+        {
+            return null;
+        }
+        long packageNameBytes = 0;
+        for (int i = 0; i < records.size; i++)
+        {
+            packageNameBytes += packageNames.getPackageName(records.applicationIds[i]).length();
+        }
+        return new ActivityBatch(records.ids[0], records.ids[records.size - 1], records.size, packageNameBytes);
+    }
+
+    @Override
+    public void readActivities(ActivityBatch batch, ActivityReader reader) throws IOException
+    {
+        // Read under the lock, but passed to the reader, which writes to the network, outside of it.
+        Records records = new Records(batch.getSize());
+        synchronized (this)
+        {
+            checkOpen();
+            read(batch.getFirstId(), batch.getLastId(), records);
+        }
+        for (int i = 0; i < records.size; i++)
+        {
+            reader.onActivity(packageNames.getPackageName(records.applicationIds[i]), records.startTimes[i], records.endTimes[i]);
+        }
+    }
+
+    @Override
+    public synchronized void ack(long firstId, long lastId)
+    {
+        checkOpen();
+        try
+        {
+            acknowledge(Math.max(firstId, getFirstId()), Math.min(lastId, nextId - 1));
+            deleteAcknowledgedSegments();
+            if (ackEntries >= MAX_ACK_ENTRIES)
+            {
+                rewriteAcks();
+            }
+        }
+        catch (IOException e)
+        {
+            throw new YonaRuntimeException("Cannot acknowledge activities: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized long count()
+    {
+        return unacknowledged;
+    }
+
+    @Override
+    public synchronized long oldestTimestamp()
+    {
+        checkOpen();
+        long id = nextStoredId(getFirstId());
+        if (id >= nextId)
+        {
+            return 0;
+        }
+        Segment segment = segments.floorEntry(id).getValue();
+        return segment.buffer.getLong((int) (id - segment.firstId) * RECORD_SIZE + 12);
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+        flush();
+        closed = true;
+        for (Segment segment : segments.values())
+        {
+            Unmapper.unmap(segment.buffer);
+        }
+        segments.clear();
+        closeQuietly(acksChannel);
+    }
+
+    private void checkOpen()
+    {
+        // An unmapped segment must never be read or written, it would crash the process.
+        if (closed)
+        {
+            throw new IllegalStateException("The activity store is closed");
+        }
+    }
+
+    /**
+     * Gets the checksum of the fields of a record, which tells a record that was written partly from a complete one.
+     */
+    private static int checksum(int applicationId, long startTime, long endTime)
+    {
+        long hash = (applicationId * 0x9E3779B97F4A7C15L) ^ startTime;
+        hash = (hash ^ (hash >>> 31)) * 0xBF58476D1CE4E5B9L ^ endTime;
+        hash = (hash ^ (hash >>> 29)) * 0x94D049BB133111EBL;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void acknowledge(long firstId, long lastId) throws IOException
+    {
+        if (firstId > lastId)
+        {
+            return;
+        }
+        long added = addAcknowledged(firstId, lastId);
+        if (added == 0)
+        {
+            return;
+        }
+        unacknowledged -= added;
+        ackBuffer.clear();
+        ackBuffer.putLong(firstId).putLong(lastId);
+        ackBuffer.flip();
+        writeFully(acksChannel, ackBuffer, (long) ackEntries * ACK_SIZE);
+        ackEntries++;
+    }
+
+    /**
+     * Adds an id range to the acknowledged ranges without the ids after the records of a segment, which a
+     * segment recovered after a crash can have.
+     *
+     * @return the number of stored ids that were not acknowledged before
+     */
+    private long addAcknowledged(long firstId, long lastId)
+    {
+        Long from = segments.floorKey(firstId);
+        long added = 0;
+        for (Segment segment : segments.subMap(from == null ? firstId : from, true, lastId, true).values())
+        {
+            long first = Math.max(firstId, segment.firstId);
+            long last = Math.min(lastId, segment.firstId + segment.records - 1);
+            if (first <= last)
+            {
+                added += acknowledged.add(first, last);
+            }
+        }
+        return added;
+    }
+
+    private void deleteAcknowledgedSegments()
+    {
+        while (segments.size() > 1)
+        {
+            Segment segment = segments.firstEntry().getValue();
+            if (!acknowledged.covers(segment.firstId, segment.firstId + segment.records - 1))
+            {
+                break;
+            }
+            segments.remove(segment.firstId);
+            Unmapper.unmap(segment.buffer);
+            if (!segment.file.delete())
+            {
+                Logger.loge(FileLogActivityStore.class, "Cannot delete " + segment.file);
+            }
+        }
+        acknowledged.removeBelow(getFirstId());
+    }
+
+    private void rewriteAcks() throws IOException
+    {
+        File temp = new File(directory, ACKS_TEMP_FILE);
+        FileChannel channel = new RandomAccessFile(temp, "rw").getChannel();
+        int entries = 0;
+        try
+        {
+            channel.truncate(0);
+            for (Map.Entry<Long, Long> range : acknowledged.ranges.entrySet())
+            {
+                ackBuffer.clear();
+                ackBuffer.putLong(range.getKey()).putLong(range.getValue());
+                ackBuffer.flip();
+                writeFully(channel, ackBuffer, (long) entries * ACK_SIZE);
+                entries++;
+            }
+        }
+        finally
+        {
+            channel.close();
+        }
+        closeQuietly(acksChannel);
+        if (!temp.renameTo(new File(directory, ACKS_FILE)))
+        {
+            throw new IOException("Cannot replace " + ACKS_FILE);
+        }
+        acksChannel = new RandomAccessFile(new File(directory, ACKS_FILE), "rw").getChannel();
+        ackEntries = entries;
+    }
+
+    private long getFirstId()
+    {
+        return segments.isEmpty() ? nextId : segments.firstKey();
+    }
+
+    /**
+     * Gets the id of the first record from an id on that is stored and not acknowledged, or the next id if there is none.
+     * A segment recovered after a crash can hold fewer records than the ids up to the next segment.
+     */
+    private long nextStoredId(long id)
+    {
+        while (id < nextId)
+        {
+            id = acknowledged.next(id);
+            Map.Entry<Long, Segment> entry = segments.floorEntry(id);
+            if (entry == null)
+            {
+                break;
+            }
+            Segment segment = entry.getValue();
+            if (id < segment.firstId + segment.records)
+            {
+                return id;
+            }
+            Long nextSegment = segments.higherKey(id);
+            if (nextSegment == null)
+            {
+                break;
+            }
+            id = nextSegment;
+        }
+        return nextId;
+    }
+
+    /**
+     * Reads the records that are not acknowledged from an id range, until the records are full.
+     */
+    private void read(long firstId, long lastId, Records records)
+    {
+        long id = Math.max(firstId, getFirstId());
+        while (records.size < records.ids.length)
+        {
+            id = nextStoredId(id);
+            if (id > lastId || id >= nextId)
+            {
+                break;
+            }
+            Segment segment = segments.floorEntry(id).getValue();
+            // A run of records that are neither acknowledged nor in another segment.
+            long runEnd = Math.min(Math.min(lastId, segment.firstId + segment.records - 1),
+                    Math.min(acknowledged.nextStart(id) - 1, id + records.ids.length - records.size - 1));
+            for (; id <= runEnd; id++)
+            {
+                int position = (int) (id - segment.firstId) * RECORD_SIZE;
+                records.add(id, segment.buffer.getInt(position), segment.buffer.getLong(position + 4), segment.buffer.getLong(position + 12));
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int read = channel.read(buffer, position);
+            if (read < 0)
+            {
+                throw new IOException("Unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel)
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            Logger.loge(FileLogActivityStore.class, e.getMessage());
+        }
+    }
+
+    private static class Segment
+    {
+        private final long firstId;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int records;
+
+        /**
+         * Maps a segment, creating it at its full size if it does not exist.
+         */
+        private Segment(long firstId, File file, int segmentRecords) throws IOException
+        {
+            this.firstId = firstId;
+            this.file = file;
+            FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+            try
+            {
+                // A segment written with a larger size keeps it.
+                capacity = (int) Math.max(segmentRecords, channel.size() / RECORD_SIZE);
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+            }
+            finally
+            {
+                // The mapping stays valid without the channel.
+                channel.close();
+            }
+            while (records < capacity && isValid(records))
+            {
+                records++;
+            }
+        }
+
+        private boolean isValid(int record)
+        {
+            int position = record * RECORD_SIZE;
+            int applicationId = buffer.getInt(position);
+            return applicationId != AppDictionary.NO_APP_ID
+                    && buffer.getInt(position + 20) == checksum(applicationId, buffer.getLong(position + 4), buffer.getLong(position + 12));
+        }
+
+        private void clearAfterRecords()
+        {
+            for (int record = records; record < capacity; record++)
+            {
+                if (buffer.getInt(record * RECORD_SIZE) != AppDictionary.NO_APP_ID)
+                {
+                    buffer.putInt(record * RECORD_SIZE, AppDictionary.NO_APP_ID);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unmaps buffers right away where the runtime allows it, with the hidden NioUtils of Android or the cleaner
+     * of the Java runtime; otherwise a buffer stays mapped until it is garbage collected.
+     */
+    private static class Unmapper
+    {
+        private static final Object TARGET;
+        private static final Method UNMAP;
+
+        static
+        {
+            Object target = null;
+            Method unmap = null;
+            try
+            {
+                unmap = Class.forName("java.nio.NioUtils").getMethod("freeDirectBuffer", ByteBuffer.class);
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                try
+                {
+                    Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                    Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                    theUnsafe.setAccessible(true);
+                    target = theUnsafe.get(null);
+                    unmap = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                }
+                catch (ReflectiveOperationException | RuntimeException e2)
+                {
+                    Logger.logi(FileLogActivityStore.class, "Segments are unmapped by the garbage collector");
+                }
+            }
+            TARGET = target;
+            UNMAP = unmap;
+        }
+
+        /**
+         * Unmaps a buffer, it must not be used anymore.
+         */
+        private static void unmap(MappedByteBuffer buffer)
+        {
+            if (UNMAP == null)
+            {
+                return;
+            }
+            try
+            {
+                UNMAP.invoke(TARGET, buffer);
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                Logger.loge(FileLogActivityStore.class, "Cannot unmap a segment: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Records
+    {
+        private final long[] ids;
+        private final int[] applicationIds;
+        private final long[] startTimes;
+        private final long[] endTimes;
+        private int size;
+
+        private Records(int capacity)
+        {
+            ids = new long[capacity];
+            applicationIds = new int[capacity];
+            startTimes = new long[capacity];
+            endTimes = new long[capacity];
+        }
+
+        private void add(long id, int applicationId, long startTime, long endTime)
+        {
+            ids[size] = id;
+            applicationIds[size] = applicationId;
+            startTimes[size] = startTime;
+            endTimes[size] = endTime;
+            size++;
+        }
+    }
+
+    /**
+     * Disjoint, non adjacent id ranges, by their first id.
+     */
+    private static class AcknowledgedRanges
+    {
+        private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+        /**
+         * Adds a range.
+         *
+         * @return the number of ids that were not in a range before
+         */
+        private long add(long firstId, long lastId)
+        {
+            long mergedFirstId = firstId;
+            long mergedLastId = lastId;
+            Map.Entry<Long, Long> floor = ranges.floorEntry(firstId);
+            if (floor != null && floor.getValue() >= firstId - 1)
+            {
+                mergedFirstId = floor.getKey();
+            }
+            long covered = 0;
+            Iterator<Map.Entry<Long, Long>> iterator = ranges.subMap(mergedFirstId, true, lastId + 1, true).entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                Map.Entry<Long, Long> range = iterator.next();
+                covered += Math.max(0, Math.min(range.getValue(), lastId) - Math.max(range.getKey(), firstId) + 1);
+                mergedLastId = Math.max(mergedLastId, range.getValue());
+                iterator.remove();
+            }
+            ranges.put(mergedFirstId, mergedLastId);
+            return lastId - firstId + 1 - covered;
+        }
+
+        private boolean contains(long id)
+        {
+            return covers(id, id);
+        }
+
+        private boolean covers(long firstId, long lastId)
+        {
+            Map.Entry<Long, Long> floor = ranges.floorEntry(firstId);
+            return floor != null && floor.getValue() >= lastId;
+        }
+
+        /**
+         * Gets the first id from an id on that is not in a range.
+         */
+        private long next(long id)
+        {
+            Map.Entry<Long, Long> floor = ranges.floorEntry(id);
+            return floor != null && floor.getValue() >= id ? floor.getValue() + 1 : id;
+        }
+
+        /**
+         * Gets the first id of the first range after an id, or {@link Long#MAX_VALUE} if there is none.
+         */
+        private long nextStart(long id)
+        {
+            Long start = ranges.higherKey(id);
+            return start == null ? Long.MAX_VALUE : start;
+        }
+
+        private void removeBelow(long id)
+        {
+            Map.Entry<Long, Long> floor = ranges.lowerEntry(id);
+            while (floor != null)
+            {
+                ranges.remove(floor.getKey());
+                if (floor.getValue() >= id)
+                {
+                    ranges.put(id, floor.getValue());
+                }
+                floor = ranges.lowerEntry(id);
+            }
+        }
+
+        private long count()
+        {
+            long count = 0;
+            for (Map.Entry<Long, Long> range : ranges.entrySet())
+            {
+                count += range.getValue() - range.getKey() + 1;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.utils.Logger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Keeps the activities in a ring of fixed capacity in memory, for benchmarks and for measuring the rest of the
+ * pipeline without storage costs. The activities are lost when the process ends, and when the ring is full an
+ * appended activity overwrites the oldest one.
+ * The id of an activity selects its slot in the ring. Acknowledged activities are marked, and the oldest
+ * activities are dropped once they are acknowledged, so batches can be acknowledged in any order.
+ */
+public class MemoryActivityStore implements ActivityStore
+{
+    private final PackageNameResolver packageNames;
+    private final int capacity;
+    private final int[] applicationIds;
+    private final long[] startTimes;
+    private final long[] endTimes;
+    private final boolean[] acknowledged;
+
+    // The ring holds the ids from firstId up to, not including, nextId.
+    private long firstId = 1;
+    private long nextId = 1;
+    private long acknowledgedCount;
+    private long overwritten;
+
+    /**
+     * Instantiates a new Memory activity store.
+     *
+     * @param packageNames the resolver of the application ids
+     * @param capacity     the number of activities the ring holds
+     */
+    public MemoryActivityStore(PackageNameResolver packageNames, int capacity)
+    {
+        this.packageNames = packageNames;
+        this.capacity = capacity;
+        applicationIds = new int[capacity];
+        startTimes = new long[capacity];
+        endTimes = new long[capacity];
+        acknowledged = new boolean[capacity];
+    }
+
+    @Override
+    public synchronized void append(List<ActivityRecord> activities)
+    {
+        long overwrittenBefore = overwritten;
+        for (ActivityRecord activity : activities)
+        {
+            replace(activity.getApplicationId(), activity.getStartTime());
+            if (nextId - firstId == capacity)
+            {
+                if (acknowledged[slot(firstId)])
+                {
+                    acknowledgedCount--;
+                }
+                else
+                {
+                    overwritten++;
+                }
+                firstId++;
+            }
+            int slot = slot(nextId++);
+            applicationIds[slot] = activity.getApplicationId();
+            startTimes[slot] = activity.getStartTime();
+            endTimes[slot] = activity.getEndTime();
+            acknowledged[slot] = false;
+        }
+        dropAcknowledged();
+        if (overwritten != overwrittenBefore)
+        {
+            Logger.loge(MemoryActivityStore.class, "Ring full, overwrote " + (overwritten - overwrittenBefore) + " activities");
+        }
+    }
+
+    private void replace(int applicationId, long startTime)
+    {
+        // A replaced session is one of the last ones, sessions are appended in order of their start time.
+        for (long id = nextId - 1; id >= firstId; id--)
+        {
+            int slot = slot(id);
+            if (startTimes[slot] < startTime)
+            {
+                return;
+            }
+            if (!acknowledged[slot] && applicationIds[slot] == applicationId && startTimes[slot] == startTime)
+            {
+                acknowledged[slot] = true;
+                acknowledgedCount++;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        // Appends are visible right away.
+    }
+
+    @Override
+    public synchronized ActivityBatch readBatch(long afterId, int limit)
+    {
+        long batchFirstId = 0;
+        long batchLastId = 0;
+        int size = 0;
+        long packageNameBytes = 0;
+        for (long id = Math.max(afterId + 1, firstId); id < nextId && size < limit; id++)
+        {
+            int slot = slot(id);
+            if (acknowledged[slot])
+            {
+                continue;
+            }
+            if (size == 0)
+            {
+                batchFirstId = id;
+            }
+            batchLastId = id;
+            size++;
+            packageNameBytes += packageNames.getPackageName(applicationIds[slot]).length();
+        }
+        return size == 0 ? null : new ActivityBatch(batchFirstId, batchLastId, size, packageNameBytes);
+    }
+
+    @Override
+    public void readActivities(ActivityBatch batch, ActivityReader reader) throws IOException
+    {
+        // Copied under the lock, so the reader, which writes to the network, does not block appends.
+        int[] batchApplicationIds = new int[batch.getSize()];
+        long[] batchStartTimes = new long[batch.getSize()];
+        long[] batchEndTimes = new long[batch.getSize()];
+        int size = 0;
+        synchronized (this)
+        {
+            long lastId = Math.min(batch.getLastId(), nextId - 1);
+            for (long id = Math.max(batch.getFirstId(), firstId); id <= lastId && size < batchApplicationIds.length; id++)
+            {
+                int slot = slot(id);
+                if (!acknowledged[slot])
+                {
+                    batchApplicationIds[size] = applicationIds[slot];
+                    batchStartTimes[size] = startTimes[slot];
+                    batchEndTimes[size] = endTimes[slot];
+                    size++;
+                }
+            }
+        }
+        for (int i = 0; i < size; i++)
+        {
+            reader.onActivity(packageNames.getPackageName(batchApplicationIds[i]), batchStartTimes[i], batchEndTimes[i]);
+        }
+    }
+
+    @Override
+    public synchronized void ack(long firstId, long lastId)
+    {
+        long last = Math.min(lastId, nextId - 1);
+        for (long id = Math.max(firstId, this.firstId); id <= last; id++)
+        {
+            int slot = slot(id);
+            if (!acknowledged[slot])
+            {
+                acknowledged[slot] = true;
+                acknowledgedCount++;
+            }
+        }
+        dropAcknowledged();
+    }
+
+    @Override
+    public synchronized long count()
+    {
+        return nextId - firstId - acknowledgedCount;
+    }
+
+    @Override
+    public synchronized long oldestTimestamp()
+    {
+        return firstId == nextId ? 0 : endTimes[slot(firstId)];
+    }
+
+    @Override
+    public void close()
+    {
+        // Nothing to release.
+    }
+
+    /**
+     * Gets overwritten.
+     *
+     * @return the number of activities that were overwritten before they were acknowledged
+     */
+    public synchronized long getOverwritten()
+    {
+        return overwritten;
+    }
+
+    private void dropAcknowledged()
+    {
+        while (firstId < nextId && acknowledged[slot(firstId)])
+        {
+            acknowledgedCount--;
+            firstId++;
+        }
+    }
+
+    private int slot(long id)
+    {
+        return (int) (id % capacity);
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+/**
+ * Resolves the application ids that stores keep instead of package names.
+ */
+public interface PackageNameResolver
+{
+    /**
+     * Gets the package name of an application id.
+     *
+     * @param applicationId the application id
+     * @return the package name
+     */
+    String getPackageName(int applicationId);
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import android.database.Cursor;
+
+import com.yona.plugin.services.api.manager.dao.ActivityTrackerDAO;
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Stores the activities in the activity tracker table, the ids are the row ids.
+ * Package names are resolved by the query that reads a batch, and the activities of a batch are read
+ * straight from the cursor. The dao keeps a running count of the activities, so counting them does not query
+ * the table.
+ */
+public class SqliteActivityStore implements ActivityStore
+{
+    private final ActivityTrackerDAO activityTrackerDAO;
+
+    /**
+     * Instantiates a new Sqlite activity store.
+     *
+     * @param activityTrackerDAO the activity tracker dao
+     */
+    public SqliteActivityStore(ActivityTrackerDAO activityTrackerDAO)
+    {
+        this.activityTrackerDAO = activityTrackerDAO;
+    }
+
+    @Override
+    public void append(List<ActivityRecord> activities)
+    {
+        activityTrackerDAO.saveActivities(activities);
+    }
+
+    @Override
+    public void flush()
+    {
+        activityTrackerDAO.awaitWrites();
+    }
+
+    @Override
+    public ActivityBatch readBatch(long afterId, int limit)
+    {
+        return activityTrackerDAO.getNextBatch(afterId, limit);
+    }
+
+    @Override
+    public void readActivities(ActivityBatch batch, ActivityReader reader) throws IOException
+    {
+        Cursor c = activityTrackerDAO.queryActivities(batch.getFirstId(), batch.getLastId());
+        try
+        {
+            while (c.moveToNext())
+            {
+                reader.onActivity(c.getString(1), c.getLong(2), c.getLong(3));
+            }
+        }
+        finally
+        {
+            c.close();
+        }
+    }
+
+    @Override
+    public void ack(long firstId, long lastId)
+    {
+        activityTrackerDAO.clearActivities(firstId, lastId);
+    }
+
+    @Override
+    public long count()
+    {
+        return activityTrackerDAO.getActivityCount();
+    }
+
+    @Override
+    public long oldestTimestamp()
+    {
+        return activityTrackerDAO.getOldestActivityEndTime();
+    }
+
+    @Override
+    public void close()
+    {
+        // The database belongs to the database helper.
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.utils;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+
+import com.yona.plugin.services.enums.NetworkTransport;
+import com.yona.plugin.services.listener.ConnectivityListener;
+import com.yona.plugin.services.utils.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the connectivity state of the device up to date from network callbacks, so requests and uploads
+ * can read it without asking the connectivity service every time.
+ * The default network is followed from Android 7; from Android 5 a callback on any network with internet
+ * refreshes the state from the active network. On older versions there are no callbacks and the state is
+ * read from the connectivity service when it is asked for.
+ * Listeners are called on a thread of their own, so they can do disk or network work without holding up
+ * the connectivity callbacks.
+ */
+public class ConnectivityMonitor
+{
+    private static ConnectivityMonitor instance;
+
+    private final ConnectivityManager connectivityManager;
+    private final List<ConnectivityListener> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService listenerExecutor = Executors.newSingleThreadExecutor();
+    private final boolean callbackRegistered;
+
+    private volatile boolean online;
+    private volatile NetworkTransport transport = NetworkTransport.NONE;
+    private volatile boolean metered;
+    private volatile boolean validated;
+
+    /**
+     * Gets instance.
+     *
+     * @param context the context
+     * @return the instance
+     */
+    public static synchronized ConnectivityMonitor getInstance(Context context)
+    {
+        if (instance == null)
+        {
+            instance = new ConnectivityMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ConnectivityMonitor(Context appContext)
+    {
+        connectivityManager = (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        refresh();
+        callbackRegistered = registerNetworkCallback();
+    }
+
+    /**
+     * Adds a listener, called on the listener thread whenever the state changes.
+     *
+     * @param listener the listener
+     */
+    public void addListener(ConnectivityListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(ConnectivityListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Is online boolean.
+     *
+     * @return whether the device has a network that is connected or connecting
+     */
+    public boolean isOnline()
+    {
+        refreshIfUnmonitored();
+        return online;
+    }
+
+    /**
+     * Gets transport.
+     *
+     * @return the transport of the default network, {@link NetworkTransport#NONE} when offline
+     */
+    public NetworkTransport getTransport()
+    {
+        refreshIfUnmonitored();
+        return transport;
+    }
+
+    /**
+     * Is metered boolean.
+     *
+     * @return whether the default network is metered
+     */
+    public boolean isMetered()
+    {
+        refreshIfUnmonitored();
+        return metered;
+    }
+
+    /**
+     * Is validated boolean.
+     *
+     * @return whether the system found the default network to reach the internet, before Android 6 the same as online
+     */
+    public boolean isValidated()
+    {
+        refreshIfUnmonitored();
+        return validated;
+    }
+
+    private void refreshIfUnmonitored()
+    {
+        if (!callbackRegistered)
+        {
+            refresh();
+        }
+    }
+
+    private boolean registerNetworkCallback()
+    {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+        {
+            return false;
+        }
+        try
+        {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+            {
+                connectivityManager.registerDefaultNetworkCallback(new DefaultNetworkCallback());
+            }
+            else
+            {
+                connectivityManager.registerNetworkCallback(new NetworkRequest.Builder()
+                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                        .build(), new RefreshingNetworkCallback());
+            }
+            return true;
+        }
+        catch (RuntimeException e)
+        {
+            Logger.loge(ConnectivityMonitor.class, e.getMessage());
+            return false;
+        }
+    }
+
+    private void refresh()
+    {
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnectedOrConnecting())
+        {
+            update(false, NetworkTransport.NONE, false, false);
+            return;
+        }
+        update(true, getTransport(networkInfo), connectivityManager.isActiveNetworkMetered(), isActiveNetworkValidated(networkInfo));
+    }
+
+    private boolean isActiveNetworkValidated(NetworkInfo networkInfo)
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+        {
+            NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+            return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        }
+        return networkInfo.isConnected();
+    }
+
+    private static NetworkTransport getTransport(NetworkInfo networkInfo)
+    {
+        switch (networkInfo.getType())
+        {
+            case ConnectivityManager.TYPE_WIFI:
+                return NetworkTransport.WIFI;
+            case ConnectivityManager.TYPE_MOBILE:
+                return NetworkTransport.CELLULAR;
+            case ConnectivityManager.TYPE_ETHERNET:
+                return NetworkTransport.ETHERNET;
+            case ConnectivityManager.TYPE_VPN:
+                return NetworkTransport.VPN;
+            default:
+                return NetworkTransport.OTHER;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static NetworkTransport getTransport(NetworkCapabilities capabilities)
+    {
+        // A VPN, like the one of this app, also carries the transport of the network underneath it.
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN))
+        {
+            return NetworkTransport.VPN;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI))
+        {
+            return NetworkTransport.WIFI;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR))
+        {
+            return NetworkTransport.CELLULAR;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET))
+        {
+            return NetworkTransport.ETHERNET;
+        }
+        return NetworkTransport.OTHER;
+    }
+
+    private void update(boolean online, NetworkTransport transport, boolean metered, boolean validated)
+    {
+        boolean restored;
+        synchronized (this)
+        {
+            if (online == this.online && transport == this.transport && metered == this.metered && validated == this.validated)
+            {
+                return;
+            }
+            restored = online && !this.online;
+            this.online = online;
+            this.transport = transport;
+            this.metered = metered;
+            this.validated = validated;
+        }
+        Logger.logi(ConnectivityMonitor.class, "Connectivity changed: online " + online + ", " + transport + ", metered " + metered + ", validated " + validated);
+        listenerExecutor.execute(() -> notifyListeners(restored));
+    }
+
+    private void notifyListeners(boolean restored)
+    {
+        for (ConnectivityListener listener : listeners)
+        {
+            try
+            {
+                listener.onConnectivityChanged(this, restored);
+            }
+            catch (Exception e)
+            {
+                Logger.loge(ConnectivityMonitor.class, e.getMessage());
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private boolean isMetered(NetworkCapabilities capabilities)
+    {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q && capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN))
+        {
+            // Before Android 10 a VPN, like the one of this app, is never reported as not metered;
+            // the connectivity service answers for the network underneath it instead.
+            return connectivityManager.isActiveNetworkMetered();
+        }
+        return !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private class DefaultNetworkCallback extends ConnectivityManager.NetworkCallback
+    {
+        @Override
+        public void onAvailable(Network network)
+        {
+            // Before Android 8 the capabilities are not always reported after a network became available.
+            NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
+            if (capabilities != null)
+            {
+                onCapabilitiesChanged(network, capabilities);
+            }
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities)
+        {
+            update(true, getTransport(capabilities), isMetered(capabilities), capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED));
+        }
+
+        @Override
+        public void onLost(Network network)
+        {
+            update(false, NetworkTransport.NONE, false, false);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private class RefreshingNetworkCallback extends ConnectivityManager.NetworkCallback
+    {
+        @Override
+        public void onAvailable(Network network)
+        {
+            refresh();
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities)
+        {
+            refresh();
+        }
+
+        @Override
+        public void onLost(Network network)
+        {
+            refresh();
+        }
+    }
+}
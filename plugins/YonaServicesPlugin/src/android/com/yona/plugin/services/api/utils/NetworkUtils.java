@@ -9,8 +9,6 @@
 package com.yona.plugin.services.api.utils;
 
 import android.content.Context;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 
 /**
  * Created by kinnarvasa on 28/03/16.
@@ -31,9 +29,7 @@ public class NetworkUtils
      */
     public static boolean isOnline(Context mContext)
     {
-        ConnectivityManager cm = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo netInfo = cm.getActiveNetworkInfo();
-        return netInfo != null && netInfo.isConnectedOrConnecting();
+        return ConnectivityMonitor.getInstance(mContext).isOnline();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.enums;
+
+/**
+ * Where the activities are stored until they are uploaded, see {@link com.yona.plugin.services.api.store.ActivityStore}.
+ */
+public enum ActivityStoreType
+{
+    /**
+     * The activity tracker table of the database.
+     */
+    SQLITE,
+    /**
+     * A ring in memory, the activities are lost when the process ends. Only for benchmarks, the app never uses it.
+     */
+    MEMORY,
+    /**
+     * Memory mapped segment files the activities are appended to, each session as soon as it is closed.
+     */
+    FILE_LOG
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.enums;
+
+/**
+ * The transport of the network the device uses by default.
+ */
+public enum NetworkTransport
+{
+    NONE,
+    WIFI,
+    CELLULAR,
+    ETHERNET,
+    VPN,
+    OTHER
+}
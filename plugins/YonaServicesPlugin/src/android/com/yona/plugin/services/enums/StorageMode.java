@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.enums;
+
+/**
+ * How the database journals its writes. It applies when the database is opened.
+ */
+public enum StorageMode
+{
+    /**
+     * The SQLite default: a rollback journal, synced on every commit, readers and the writer block each other.
+     */
+    ROLLBACK_JOURNAL,
+    /**
+     * A write-ahead log, synced at checkpoints only, readers run concurrently with the writer.
+     */
+    WRITE_AHEAD_LOG
+}
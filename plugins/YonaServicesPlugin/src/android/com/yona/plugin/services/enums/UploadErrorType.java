@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.enums;
+
+/**
+ * The kinds of failed activity uploads, which decide whether an upload is retried.
+ */
+public enum UploadErrorType
+{
+    /**
+     * No response was received, retried.
+     */
+    NETWORK,
+    /**
+     * The server failed or asked to come back later (5xx, 408, 429), retried.
+     */
+    SERVER,
+    /**
+     * The server rejected the activities of the request (400, 413, 422), sending them again gives the same
+     * result, so the batch is split or dropped.
+     */
+    CLIENT,
+    /**
+     * The server refused the client (other 4xx, such as 401 and 404), retried, as the credentials or the
+     * server settings may be updated meanwhile.
+     */
+    REFUSED
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.enums;
+
+/**
+ * The states of the activity upload, see {@link com.yona.plugin.services.api.manager.impl.ActivityUploader}.
+ */
+public enum UploadState
+{
+    /**
+     * No upload is running.
+     */
+    IDLE,
+    /**
+     * Batches are being read and posted.
+     */
+    UPLOADING,
+    /**
+     * A batch failed, no new batches are posted and the upload stops once the batches in flight complete.
+     */
+    STOPPING
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.enums;
+
+/**
+ * The reasons the upload trigger policy starts an upload.
+ */
+public enum UploadTrigger
+{
+    PENDING_ROWS,
+    OLDEST_ROW_AGE,
+    UNMETERED_NETWORK,
+    CHARGING,
+    CONNECTIVITY_RESTORED
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.listener;
+
+import com.yona.plugin.services.api.utils.ConnectivityMonitor;
+
+/**
+ * The interface Connectivity listener.
+ */
+public interface ConnectivityListener
+{
+    /**
+     * On connectivity changed.
+     *
+     * @param monitor  the monitor, holding the new state
+     * @param restored whether the device went from offline to online
+     */
+    void onConnectivityChanged(ConnectivityMonitor monitor, boolean restored);
+}
@@ -15,7 +15,9 @@ import android.text.TextUtils;
 
 import javax.crypto.spec.IvParameterSpec;
 
+import com.yona.plugin.services.enums.ActivityStoreType;
 import com.yona.plugin.services.enums.EncryptionMethod;
+import com.yona.plugin.services.enums.StorageMode;
 import com.yona.plugin.services.security.EncryptionUtils;
 import com.yona.plugin.services.security.MyCipher;
 
@@ -141,6 +143,125 @@ public class SharedPreference
         return getAppPreferences().edit().putString(AppConstant.APP_ACTIVITY_LINK, appActivityUrl).commit();
     }
 
+    /**
+     * Is request compression enabled.
+     *
+     * @return true if request bodies are sent gzip compressed
+     */
+    public boolean isRequestCompressionEnabled()
+    {
+        return getAppPreferences().getBoolean(AppConstant.REQUEST_COMPRESSION, false);
+    }
+
+    /**
+     * Sets request compression enabled.
+     *
+     * @param enabled whether request bodies are sent gzip compressed
+     */
+    public boolean setRequestCompressionEnabled(boolean enabled)
+    {
+        return getAppPreferences().edit().putBoolean(AppConstant.REQUEST_COMPRESSION, enabled).commit();
+    }
+
+    /**
+     * Gets database storage mode.
+     *
+     * @return the storage mode the database is opened with, write-ahead logging if none or an unknown one is set
+     */
+    public StorageMode getDatabaseStorageMode()
+    {
+        String storageMode = getAppPreferences().getString(AppConstant.DATABASE_STORAGE_MODE, null);
+        if (storageMode != null)
+        {
+            try
+            {
+                return StorageMode.valueOf(storageMode);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Fall back to the default below.
+            }
+        }
+        return StorageMode.WRITE_AHEAD_LOG;
+    }
+
+    /**
+     * Sets database storage mode, which applies the next time the database is opened.
+     *
+     * @param storageMode the storage mode
+     */
+    public boolean setDatabaseStorageMode(StorageMode storageMode)
+    {
+        return getAppPreferences().edit().putString(AppConstant.DATABASE_STORAGE_MODE, storageMode.name()).commit();
+    }
+
+    /**
+     * Gets activity store type.
+     *
+     * @return the store activities are kept in until they are uploaded, the database if none or an unknown one is set
+     */
+    public ActivityStoreType getActivityStoreType()
+    {
+        return getActivityStoreType(AppConstant.ACTIVITY_STORE);
+    }
+
+    /**
+     * Sets activity store type, which applies the next time the app is started. The activities of the store
+     * in use are then moved to the new store.
+     *
+     * @param activityStoreType the activity store type
+     * @throws IllegalArgumentException if the type is {@link ActivityStoreType#MEMORY}, which is only for benchmarks
+     */
+    public boolean setActivityStoreType(ActivityStoreType activityStoreType)
+    {
+        if (activityStoreType == ActivityStoreType.MEMORY)
+        {
+            throw new IllegalArgumentException("The MEMORY activity store is only for benchmarks");
+        }
+        return getAppPreferences().edit().putString(AppConstant.ACTIVITY_STORE, activityStoreType.name()).commit();
+    }
+
+    /**
+     * Gets the activity store in use.
+     *
+     * @return the store the activities were stored in the last time the app was started, the database if none is set
+     */
+    public ActivityStoreType getActivityStoreInUse()
+    {
+        return getActivityStoreType(AppConstant.ACTIVITY_STORE_IN_USE);
+    }
+
+    /**
+     * Sets the activity store in use.
+     *
+     * @param activityStoreType the activity store type
+     */
+    public boolean setActivityStoreInUse(ActivityStoreType activityStoreType)
+    {
+        return getAppPreferences().edit().putString(AppConstant.ACTIVITY_STORE_IN_USE, activityStoreType.name()).commit();
+    }
+
+    private ActivityStoreType getActivityStoreType(String key)
+    {
+        String activityStoreType = getAppPreferences().getString(key, null);
+        if (activityStoreType != null)
+        {
+            try
+            {
+                ActivityStoreType type = ActivityStoreType.valueOf(activityStoreType);
+                if (type != ActivityStoreType.MEMORY)
+                {
+                    return type;
+                }
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Fall back to the default below.
+            }
+        }
+        return ActivityStoreType.SQLITE;
+    }
+
     /**
      * Gets server url.
      *
@@ -26,10 +26,117 @@ public interface AppConstant
 	 */
 	int ONE_SECOND = 1000;
 
+	/**
+	 * The interval of the app monitoring loop right after the foreground app changed.
+	 */
+	long MONITORING_MIN_INTERVAL = ONE_SECOND;
+
+	/**
+	 * The longest interval the app monitoring loop backs off to while the same app stays in the foreground.
+	 * The switches in between are read from the usage events, so they are detected later, but not lost.
+	 */
+	long MONITORING_MAX_INTERVAL = 8 * ONE_SECOND;
+
+	/**
+	 * The largest gap between two sessions of the same app that are merged into one activity.
+	 */
+	long SESSION_MERGE_GAP = 5 * ONE_SECOND;
+
+	/**
+	 * Sessions shorter than this are not stored.
+	 */
+	long SESSION_MIN_DURATION = 2 * ONE_SECOND;
+
+	/**
+	 * The number of buffered sessions that are written to the database at once.
+	 */
+	int SESSION_FLUSH_SIZE = 50;
+
+	/**
+	 * The longest time a session stays buffered in memory before it is written to the database.
+	 */
+	long SESSION_FLUSH_INTERVAL = 5 * 60 * ONE_SECOND;
+
+	/**
+	 * The number of activity batches that are posted to the server concurrently.
+	 */
+	int UPLOAD_MAX_IN_FLIGHT = 3;
+
+	/**
+	 * The number of activities posted in the first request of an upload.
+	 */
+	int UPLOAD_BATCH_INITIAL_SIZE = 100;
+
+	/**
+	 * The smallest number of activities posted in one request.
+	 */
+	int UPLOAD_BATCH_MIN_SIZE = 20;
+
+	/**
+	 * The largest number of activities posted in one request.
+	 */
+	int UPLOAD_BATCH_MAX_SIZE = 1000;
+
+	/**
+	 * Requests that take longer than this make the next batches smaller.
+	 */
+	long UPLOAD_TARGET_LATENCY = 3 * ONE_SECOND;
+
+	/**
+	 * The largest request body of an activity upload, in bytes.
+	 */
+	long UPLOAD_MAX_PAYLOAD_BYTES = 256 * 1024;
+
+	/**
+	 * The delay before the first retry of a failed upload, doubled for every further attempt.
+	 */
+	long UPLOAD_RETRY_BASE_DELAY = 30 * ONE_SECOND;
+
+	/**
+	 * The longest delay between two retries of a failed upload.
+	 */
+	long UPLOAD_RETRY_MAX_DELAY = 60 * 60 * ONE_SECOND;
+
+	/**
+	 * The number of times the upload of the same batch is retried after server errors before it failed permanently.
+	 */
+	int UPLOAD_RETRY_MAX_ATTEMPTS = 8;
+
+	/**
+	 * An upload is started when more activities than this are stored.
+	 */
+	long UPLOAD_TRIGGER_PENDING_ROWS = 500;
+
+	/**
+	 * An upload is started when the oldest stored activity ended longer ago than this.
+	 */
+	long UPLOAD_TRIGGER_MAX_AGE = 30 * 60 * ONE_SECOND;
+
+	/**
+	 * The shortest time between two uploads started by the upload trigger policy.
+	 */
+	long UPLOAD_TRIGGER_MIN_INTERVAL = 5 * 60 * ONE_SECOND;
+
+	/**
+	 * The number of activities the in-memory activity store holds before it overwrites the oldest.
+	 */
+	int ACTIVITY_MEMORY_STORE_CAPACITY = 100000;
+
+	/**
+	 * The directory, in the files directory of the app, of the file log activity store.
+	 */
+	String ACTIVITY_LOG_DIRECTORY = "activityLog";
+
+	/**
+	 * The number of activities of a segment of the file log activity store.
+	 */
+	int ACTIVITY_LOG_SEGMENT_RECORDS = 4096;
+
 	//Custom Broadcast actions.
 	String RESTART_VPN = "com.yona.app.RESTART_VPN";
 	String RESTART_DEVICE = "com.yona.app.RESTART_DEVICE";
 	String WAKE_UP = "com.yona.app.WAKE_UP_ALARM";
+	String RETRY_UPLOAD = "com.yona.app.RETRY_UPLOAD";
 	String CONNECT_VPN = "nu.yona.app.CONNECT_VPN";
 
 	// Notifications Channel Id's
@@ -104,4 +211,30 @@ public interface AppConstant
 	String ROOT_CERTIFICATE_ACTIVE = "rootCertificateActive";
 
 	String YONA_ENCRYPTION_METHOD = "yonaEncryptionMethod";
+
+	/**
+	 * The constant REQUEST_COMPRESSION, whether request bodies are sent gzip compressed.
+	 */
+	String REQUEST_COMPRESSION = "requestCompression";
+
+	/**
+	 * The constant DATABASE_STORAGE_MODE, the {@link com.yona.plugin.services.enums.StorageMode} of the database.
+	 */
+	String DATABASE_STORAGE_MODE = "databaseStorageMode";
+
+	/**
+	 * The constant ACTIVITY_STORE, the {@link com.yona.plugin.services.enums.ActivityStoreType} activities are stored in.
+	 */
+	String ACTIVITY_STORE = "activityStore";
+
+	/**
+	 * The constant ACTIVITY_STORE_IN_USE, the {@link com.yona.plugin.services.enums.ActivityStoreType} activities were stored in the last time the app was started.
+	 */
+	String ACTIVITY_STORE_IN_USE = "activityStoreInUse";
+
+	String UPLOAD_RETRY_BATCH = "uploadRetryBatch";
+
+	String UPLOAD_RETRY_ATTEMPTS = "uploadRetryAttempts";
+
+	String UPLOAD_RETRY_AT = "uploadRetryAt";
 }
@@ -28,8 +28,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.security.KeyStore;
 import java.util.Enumeration;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 
 import de.blinkt.openvpn.LaunchVPN;
 import de.blinkt.openvpn.VpnProfile;
@@ -39,8 +37,6 @@ import nu.yona.app.R;
 
 public class AppUtils {
 
-    private static ScheduledExecutorService scheduler;
-
     private static Intent activityMonitorIntent;
 
     /**
@@ -149,42 +145,6 @@ public class AppUtils {
         new Handler().postDelayed(() -> APIManager.getInstance().getActivityManager(context).postAllDBActivities(), delayMilliseconds);
     }
 
-    /**
-     * Gets initialize scheduler.
-     *
-     * @return the initialize scheduler
-     */
-    public static ScheduledExecutorService getInitializeScheduler()
-    {
-        if (scheduler == null)
-        {
-            scheduler = Executors.newSingleThreadScheduledExecutor();
-        }
-        return scheduler;
-    }
-
-    /**
-     * Gets scheduler.
-     *
-     * @return the scheduler
-     */
-    public static ScheduledExecutorService getScheduler()
-    {
-        return AppUtils.scheduler;
-    }
-
-    /**
-     * Sets null scheduler.
-     */
-    public static void setNullScheduler()
-    {
-        if (scheduler != null)
-        {
-            scheduler.shutdown();
-        }
-        scheduler = null;
-    }
-
     public static boolean isVPNConnected(Context context)
     {
         SharedPreference sharedPreference  = new SharedPreference(context);
@@ -8,9 +8,7 @@
 
 package com.yona.plugin.services.utils;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
 
 /**
  * Created by bhargavsuthar on 10/05/16.
@@ -25,8 +23,18 @@ public class DateUtility
      */
     public static String getLongFormatDate(Date date)
     {
-        SimpleDateFormat sdf = new SimpleDateFormat(AppConstant.YONA_LONG_DATE_FORMAT, Locale.getDefault());
-        return sdf.format(date);
+        return getLongFormatDate(date.getTime());
     }
 
-}
\ No newline at end of file
+    /**
+     * Gets long format date.
+     *
+     * @param epochMillis the date in milliseconds since the epoch
+     * @return the long format date
+     */
+    public static String getLongFormatDate(long epochMillis)
+    {
+        return TimestampCodec.getInstance().format(epochMillis);
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Counts latencies in fixed buckets, from 10 milliseconds up to 10 seconds. Recording is constant time
+ * and the memory used does not grow with the number of samples.
+ */
+public class LatencyHistogram
+{
+    private static final long[] BUCKET_BOUNDS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final long[] counts = new long[BUCKET_BOUNDS.length + 1];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Records a latency.
+     *
+     * @param millis the latency in milliseconds
+     */
+    public synchronized void record(long millis)
+    {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS.length && millis > BUCKET_BOUNDS[bucket])
+        {
+            bucket++;
+        }
+        counts[bucket]++;
+        count++;
+        sum += millis;
+        max = Math.max(max, millis);
+    }
+
+    /**
+     * Gets count.
+     *
+     * @return the number of latencies recorded
+     */
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Converts the histogram to JSON. The buckets are keyed by their upper bound in milliseconds, the last by "+Inf".
+     *
+     * @return the json object
+     * @throws JSONException the json exception
+     */
+    public synchronized JSONObject toJson() throws JSONException
+    {
+        JSONObject buckets = new JSONObject();
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++)
+        {
+            buckets.put(String.valueOf(BUCKET_BOUNDS[i]), counts[i]);
+        }
+        buckets.put("+Inf", counts[BUCKET_BOUNDS.length]);
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        json.put("mean", count == 0 ? 0 : sum / count);
+        json.put("max", max);
+        json.put("buckets", buckets);
+        return json;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.utils;
+
+import java.util.TimeZone;
+
+/**
+ * Formats and parses timestamps in the {@link AppConstant#YONA_LONG_DATE_FORMAT} format
+ * (yyyy-MM-dd'T'HH:mm:ss.SSSZ) in the default time zone.
+ * <p>
+ * Unlike SimpleDateFormat it writes into a reused buffer, always uses ASCII digits and caches the
+ * time zone offset of the current hour, so formatting a timestamp does not allocate anything but the
+ * resulting string. The codec is shared by the monitoring and upload threads and is thread safe.
+ */
+public class TimestampCodec
+{
+    private static final long ONE_MINUTE = 60L * AppConstant.ONE_SECOND;
+    private static final long ONE_HOUR = 60L * ONE_MINUTE;
+    private static final long ONE_DAY = 24L * ONE_HOUR;
+    private static final int FORMATTED_LENGTH = "yyyy-MM-ddTHH:mm:ss.SSS+hhmm".length();
+
+    private static final TimestampCodec instance = new TimestampCodec();
+
+    private final char[] buffer = new char[FORMATTED_LENGTH];
+    private TimeZone timeZone;
+    private long cachedHourStart = Long.MIN_VALUE;
+    private int cachedOffset;
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static TimestampCodec getInstance()
+    {
+        return instance;
+    }
+
+    private TimestampCodec()
+    {
+    }
+
+    /**
+     * Forgets the cached time zone, to be called when the default time zone changes.
+     */
+    public synchronized void invalidate()
+    {
+        timeZone = null;
+        cachedHourStart = Long.MIN_VALUE;
+    }
+
+    /**
+     * Formats a timestamp.
+     *
+     * @param epochMillis the timestamp in milliseconds since the epoch
+     * @return the formatted timestamp
+     */
+    public synchronized String format(long epochMillis)
+    {
+        int offset = getOffset(epochMillis);
+        long localMillis = epochMillis + offset;
+        long days = floorDiv(localMillis, ONE_DAY);
+        long millisOfDay = localMillis - days * ONE_DAY;
+
+        // Civil date from the number of days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        writeDigits(0, year, 4);
+        buffer[4] = '-';
+        writeDigits(5, month, 2);
+        buffer[7] = '-';
+        writeDigits(8, day, 2);
+        buffer[10] = 'T';
+        writeDigits(11, (int) (millisOfDay / ONE_HOUR), 2);
+        buffer[13] = ':';
+        writeDigits(14, (int) (millisOfDay / ONE_MINUTE % 60), 2);
+        buffer[16] = ':';
+        writeDigits(17, (int) (millisOfDay / AppConstant.ONE_SECOND % 60), 2);
+        buffer[19] = '.';
+        writeDigits(20, (int) (millisOfDay % AppConstant.ONE_SECOND), 3);
+        buffer[23] = offset < 0 ? '-' : '+';
+        int offsetMinutes = Math.abs(offset) / (int) ONE_MINUTE;
+        writeDigits(24, offsetMinutes / 60, 2);
+        writeDigits(26, offsetMinutes % 60, 2);
+        return new String(buffer);
+    }
+
+    /**
+     * Parses a timestamp written by {@link #format(long)} or by SimpleDateFormat with the same pattern.
+     *
+     * @param timestamp the formatted timestamp
+     * @return the timestamp in milliseconds since the epoch
+     * @throws IllegalArgumentException if the timestamp is not in the expected format
+     */
+    public long parse(String timestamp)
+    {
+        if (timestamp == null || timestamp.length() != FORMATTED_LENGTH)
+        {
+            throw new IllegalArgumentException("Invalid timestamp: " + timestamp);
+        }
+        int year = readDigits(timestamp, 0, 4);
+        int month = readDigits(timestamp, 5, 2);
+        int day = readDigits(timestamp, 8, 2);
+        long millisOfDay = readDigits(timestamp, 11, 2) * ONE_HOUR
+                + readDigits(timestamp, 14, 2) * ONE_MINUTE
+                + readDigits(timestamp, 17, 2) * (long) AppConstant.ONE_SECOND
+                + readDigits(timestamp, 20, 3);
+        long offset = (readDigits(timestamp, 24, 2) * 60 + readDigits(timestamp, 26, 2)) * ONE_MINUTE;
+        if (timestamp.charAt(23) == '-')
+        {
+            offset = -offset;
+        }
+
+        // Number of days since 1970-01-01 from the civil date, the inverse of the calculation in format.
+        long shiftedYear = month <= 2 ? year - 1 : year;
+        long era = floorDiv(shiftedYear, 400);
+        long yearOfEra = shiftedYear - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097 + dayOfEra - 719468;
+        return days * ONE_DAY + millisOfDay - offset;
+    }
+
+    private int getOffset(long epochMillis)
+    {
+        if (timeZone == null)
+        {
+            timeZone = TimeZone.getDefault();
+        }
+        long hourStart = floorDiv(epochMillis, ONE_HOUR) * ONE_HOUR;
+        if (hourStart == cachedHourStart)
+        {
+            return cachedOffset;
+        }
+        int offset = timeZone.getOffset(epochMillis);
+        // Offsets change at most once per hour, so equal offsets at both ends mean the whole hour has that offset.
+        if (timeZone.getOffset(hourStart) == offset && timeZone.getOffset(hourStart + ONE_HOUR - 1) == offset)
+        {
+            cachedHourStart = hourStart;
+            cachedOffset = offset;
+        }
+        return offset;
+    }
+
+    private static long floorDiv(long value, long divisor)
+    {
+        long quotient = value / divisor;
+        return (value % divisor != 0 && (value < 0) != (divisor < 0)) ? quotient - 1 : quotient;
+    }
+
+    private void writeDigits(int position, int value, int length)
+    {
+        for (int i = position + length - 1; i >= position; i--)
+        {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int readDigits(String timestamp, int position, int length)
+    {
+        int value = 0;
+        for (int i = position; i < position + length; i++)
+        {
+            char c = timestamp.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                throw new IllegalArgumentException("Invalid timestamp: " + timestamp);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.db;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.yona.plugin.services.api.manager.dao.ActivityTrackerDAO;
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.enums.StorageMode;
+import com.yona.plugin.services.state.SharedPreference;
+import com.yona.plugin.services.utils.AppConstant;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.SQLiteMode;
+import org.robolectric.shadows.ShadowSQLiteConnection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the storage modes of {@link DatabaseHelper}, a rollback journal and a write-ahead log with its
+ * pragmas. Measures the latency of a save of {@link AppConstant#SESSION_FLUSH_SIZE} activities until it is
+ * committed, and the latency of reading an upload batch while another thread keeps saving, together with the
+ * latency of those saves. Latencies are reported in microseconds. It runs on the native SQLite of Robolectric,
+ * the legacy one runs all connections on a single thread, so readers could never overlap the writer. The
+ * default journal and sync modes are set to those of Android, Robolectric defaults to an unsynced journal in memory.
+ * Not part of the unit tests, run it with {@code ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*StorageModeBenchmark'};
+ * the system properties benchmark.saves and benchmark.reads configure it.
+ */
+@RunWith(RobolectricTestRunner.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class StorageModeBenchmark
+{
+    private static final String DATABASE_NAME = "yonaStorageModeBenchmarkDB";
+    private static final int APPS = 50;
+    private static final int SAVE_SIZE = AppConstant.SESSION_FLUSH_SIZE;
+    private static final int BATCH_SIZE = AppConstant.UPLOAD_BATCH_INITIAL_SIZE;
+    private static final long ACTIVITY_DURATION = 30 * AppConstant.ONE_SECOND;
+    private static final long START = 1_500_000_000_000L;
+    private static final int WARM_UP_SAVES = 100;
+
+    private static final int SAVES = Integer.getInteger("benchmark.saves", 200);
+    private static final int READS = Integer.getInteger("benchmark.reads", 200);
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private ActivityTrackerDAO activityTrackerDAO;
+    private long startTime;
+
+    @Before
+    public void setUp()
+    {
+        context = RuntimeEnvironment.getApplication();
+        startTime = START;
+        ShadowSQLiteConnection.setDefaultJournalMode("TRUNCATE");
+        ShadowSQLiteConnection.setDefaultSyncMode("FULL");
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (databaseHelper != null)
+        {
+            databaseHelper.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    @Test
+    public void rollbackJournal() throws JSONException, InterruptedException
+    {
+        run(StorageMode.ROLLBACK_JOURNAL);
+    }
+
+    @Test
+    public void writeAheadLog() throws JSONException, InterruptedException
+    {
+        run(StorageMode.WRITE_AHEAD_LOG);
+    }
+
+    private void run(StorageMode storageMode) throws JSONException, InterruptedException
+    {
+        new SharedPreference(context).setDatabaseStorageMode(storageMode);
+        databaseHelper = DatabaseHelper.openSeparateDatabase(context, DATABASE_NAME);
+        activityTrackerDAO = new ActivityTrackerDAO(databaseHelper);
+        insertApps();
+
+        // Not measured, so the mode that runs first does not pay for compiling the code.
+        for (int i = 0; i < WARM_UP_SAVES; i++)
+        {
+            save();
+        }
+        long[] saveLatencies = new long[SAVES];
+        for (int i = 0; i < SAVES; i++)
+        {
+            saveLatencies[i] = save();
+        }
+
+        List<Long> concurrentSaveLatencies = new ArrayList<>();
+        AtomicBoolean reading = new AtomicBoolean(true);
+        Thread saver = new Thread(() ->
+        {
+            while (reading.get())
+            {
+                concurrentSaveLatencies.add(save());
+            }
+        }, "StorageModeBenchmarkSaver");
+        saver.start();
+        long[] readLatencies = new long[READS];
+        int rowsRead = 0;
+        for (int i = 0; i < READS; i++)
+        {
+            long start = System.nanoTime();
+            rowsRead += readBatch();
+            readLatencies[i] = System.nanoTime() - start;
+        }
+        reading.set(false);
+        saver.join();
+        assertTrue(rowsRead > 0);
+
+        JSONObject readDuringWrite = new JSONObject();
+        readDuringWrite.put("reads", toJson(readLatencies));
+        long[] concurrentSaves = new long[concurrentSaveLatencies.size()];
+        for (int i = 0; i < concurrentSaves.length; i++)
+        {
+            concurrentSaves[i] = concurrentSaveLatencies.get(i);
+        }
+        readDuringWrite.put("saves", toJson(concurrentSaves));
+
+        JSONObject results = new JSONObject();
+        results.put("storageMode", databaseHelper.getStorageMode().name());
+        results.put("journalMode", getPragma("journal_mode"));
+        results.put("synchronous", getPragma("synchronous"));
+        results.put("saveSize", SAVE_SIZE);
+        results.put("batchSize", BATCH_SIZE);
+        results.put("saves", toJson(saveLatencies));
+        results.put("readDuringWrite", readDuringWrite);
+        results.put("databaseWriter", databaseHelper.getWriter().toJson());
+        System.out.println("Storage mode benchmark: " + results.toString(2));
+    }
+
+    private String getPragma(String name)
+    {
+        // Read on the writer thread, the pragmas are set on the connection that writes.
+        return databaseHelper.getWriter().execute(db -> getPragma(db, name));
+    }
+
+    private static String getPragma(SQLiteDatabase db, String name)
+    {
+        Cursor c = db.rawQuery("PRAGMA " + name, null);
+        try
+        {
+            return c.moveToFirst() ? c.getString(0) : null;
+        }
+        finally
+        {
+            c.close();
+        }
+    }
+
+    private void insertApps()
+    {
+        databaseHelper.getWriter().execute(db ->
+        {
+            ContentValues values = new ContentValues();
+            for (int appId = 1; appId <= APPS; appId++)
+            {
+                values.put(DBConstant.APP_ID, appId);
+                values.put(DBConstant.PACKAGE_NAME, "com.example.benchmark.app" + appId);
+                db.insertWithOnConflict(DBConstant.TBL_APPS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Saves activities and waits until they are committed.
+     *
+     * @return the latency in nanoseconds
+     */
+    private long save()
+    {
+        List<ActivityRecord> activities = new ArrayList<>(SAVE_SIZE);
+        for (int i = 0; i < SAVE_SIZE; i++)
+        {
+            activities.add(new ActivityRecord(1 + i % APPS, startTime, startTime + ACTIVITY_DURATION));
+            startTime += ACTIVITY_DURATION;
+        }
+        long start = System.nanoTime();
+        activityTrackerDAO.saveActivities(activities);
+        activityTrackerDAO.awaitWrites();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Reads the first batch of activities the way the uploader does.
+     *
+     * @return the number of activities read
+     */
+    private int readBatch()
+    {
+        ActivityBatch batch = activityTrackerDAO.getNextBatch(0, BATCH_SIZE);
+        int rows = 0;
+        Cursor c = activityTrackerDAO.queryActivities(batch.getFirstId(), batch.getLastId());
+        try
+        {
+            while (c.moveToNext())
+            {
+                c.getString(1);
+                rows++;
+            }
+        }
+        finally
+        {
+            c.close();
+        }
+        return rows;
+    }
+
+    private static JSONObject toJson(long[] latencies) throws JSONException
+    {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        long sum = 0;
+        for (long latency : sorted)
+        {
+            sum += latency;
+        }
+        JSONObject json = new JSONObject();
+        json.put("count", sorted.length);
+        if (sorted.length > 0)
+        {
+            json.put("meanUs", sum / sorted.length / 1000);
+            json.put("p50Us", sorted[sorted.length / 2] / 1000);
+            json.put("p99Us", sorted[(int) (sorted.length * 0.99)] / 1000);
+            json.put("maxUs", sorted[sorted.length - 1] / 1000);
+        }
+        return json;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.json;
+
+import com.google.gson.Gson;
+import com.yona.plugin.services.api.db.JsonSerializer;
+import com.yona.plugin.services.api.model.Activity;
+import com.yona.plugin.services.api.model.AppActivity;
+import com.yona.plugin.services.api.model.User;
+import com.yona.plugin.services.utils.MicroBenchmark;
+
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the type adapters of {@link JsonCodec} with the reflective paths they replaced: reflective Gson for
+ * the requests and responses of the server, and Jackson, configured as the database serializer used it, for
+ * the user stored in the database. Prints the time and the bytes allocated per conversion, and the cost of the
+ * reflective adapters that Gson builds the first time it sees a type.
+ * Not part of the unit tests, run it with {@code ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*JsonCodecBenchmark'}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class JsonCodecBenchmark
+{
+    private static final int ITERATIONS = 20_000;
+    // The user is small, it needs more runs before the JIT compiled the adapters.
+    private static final int USER_ITERATIONS = 100_000;
+    private static final int ACTIVITIES = 100;
+    private static final String USER_JSON = "{\"_links\":{"
+            + "\"self\":{\"href\":\"https://app.example.com/users/1\"},"
+            + "\"edit\":{\"href\":\"https://app.example.com/users/1\"},"
+            + "\"yona:messages\":{\"href\":\"https://app.example.com/users/1/messages/\"},"
+            + "\"yona:dailyActivityReports\":{\"href\":\"https://app.example.com/users/1/activity/days/\"},"
+            + "\"yona:weeklyActivityReports\":{\"href\":\"https://app.example.com/users/1/activity/weeks/\"},"
+            + "\"yona:newDeviceRequest\":{\"href\":\"https://app.example.com/newDeviceRequests/+31612345678\"},"
+            + "\"yona:appActivity\":{\"href\":\"https://app.example.com/users/1/devices/2/appActivity/\"},"
+            + "\"yona:ovpnProfile\":{\"href\":\"https://app.example.com/users/1/devices/2/vpnProfile/profile.ovpn\"},"
+            + "\"yona:sslRootCert\":{\"href\":\"https://app.example.com/ssl/rootcert.cer\"},"
+            + "\"curies\":[{\"name\":\"yona\",\"href\":\"https://app.example.com/rels/{rel}\",\"templated\":true}]},"
+            + "\"firstName\":\"John\",\"lastName\":\"Doe\",\"mobileNumber\":\"+31612345678\",\"nickname\":\"JD\","
+            + "\"devices\":[],\"status\":\"ACTIVE\",\"version\":1}";
+
+    private final Gson codec = JsonCodec.getGson();
+    private final Gson reflectiveGson = new Gson();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AppActivity appActivity;
+    private User user;
+
+    @Before
+    public void setUp()
+    {
+        objectMapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.configure(SerializationConfig.Feature.FAIL_ON_EMPTY_BEANS, false);
+        List<Activity> activities = new ArrayList<>();
+        for (int i = 0; i < ACTIVITIES; i++)
+        {
+            Activity activity = new Activity();
+            activity.setApplication("com.example.popular.app" + i % 30);
+            activity.setStartTime("2018-01-0" + (1 + i % 9) + "T10:" + (10 + i % 50) + ":00.000+0100");
+            activity.setEndTime("2018-01-0" + (1 + i % 9) + "T10:" + (10 + i % 50) + ":45.000+0100");
+            activities.add(activity);
+        }
+        appActivity = new AppActivity();
+        appActivity.setDeviceDateTime("2018-01-10T12:00:00.000+0100");
+        appActivity.setActivities(activities);
+        user = codec.fromJson(USER_JSON, User.class);
+    }
+
+    @Test
+    public void writeAppActivity() throws Exception
+    {
+        assertEquals(reflectiveGson.toJson(appActivity), codec.toJson(appActivity));
+        measure("AppActivity to JSON, JsonCodec", ITERATIONS, i -> codec.toJson(appActivity));
+        measure("AppActivity to JSON, reflective Gson", ITERATIONS, i -> reflectiveGson.toJson(appActivity));
+    }
+
+    @Test
+    public void readAppActivity() throws Exception
+    {
+        String json = codec.toJson(appActivity);
+        assertEquals(ACTIVITIES, codec.fromJson(json, AppActivity.class).getActivities().size());
+        measure("AppActivity from JSON, JsonCodec", ITERATIONS, i -> codec.fromJson(json, AppActivity.class));
+        measure("AppActivity from JSON, reflective Gson", ITERATIONS, i -> reflectiveGson.fromJson(json, AppActivity.class));
+    }
+
+    @Test
+    public void readUserResponse() throws Exception
+    {
+        measure("User from JSON, JsonCodec", USER_ITERATIONS, i -> codec.fromJson(USER_JSON, User.class));
+        measure("User from JSON, reflective Gson", USER_ITERATIONS, i -> reflectiveGson.fromJson(USER_JSON, User.class));
+        // A new Gson builds its reflective adapters again, as on the first request after a cold start.
+        measure("User from JSON, first use of a reflective Gson", ITERATIONS, i -> new Gson().fromJson(USER_JSON, User.class));
+    }
+
+    @Test
+    public void storedUser() throws Exception
+    {
+        JsonSerializer serializer = new JsonSerializer();
+        byte[] codecBlob = serializer.serialize(user);
+        byte[] jacksonBlob = objectMapper.writeValueAsBytes(user);
+        assertEquals(user.getMobileNumber(), serializer.deserialize(codecBlob, User.class).getMobileNumber());
+        measure("User to blob, JsonCodec", USER_ITERATIONS, i -> serializer.serialize(user));
+        measure("User to blob, Jackson", USER_ITERATIONS, i -> objectMapper.writeValueAsBytes(user));
+        measure("User from blob, JsonCodec", USER_ITERATIONS, i -> serializer.deserialize(codecBlob, User.class));
+        measure("User from blob, Jackson", USER_ITERATIONS, i -> objectMapper.readValue(jacksonBlob, User.class));
+    }
+
+    private static void measure(String name, int iterations, MicroBenchmark.Operation operation) throws Exception
+    {
+        long allocatedBefore = getAllocatedBytes();
+        MicroBenchmark.measure(name, iterations, operation);
+        // Measuring runs the operation twice as often, once to warm up.
+        long allocated = (getAllocatedBytes() - allocatedBefore) / (2L * iterations);
+        System.out.println(String.format("%-50s %12d bytes/op", "", allocated));
+    }
+
+    private static long getAllocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.dao;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.yona.plugin.services.api.db.DBConstant;
+import com.yona.plugin.services.api.db.DatabaseHelper;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.enums.StorageMode;
+import com.yona.plugin.services.state.SharedPreference;
+import com.yona.plugin.services.utils.AppConstant;
+import com.yona.plugin.services.utils.Logger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures saving activities into the database, the way the monitor does in saves of
+ * {@link AppConstant#SESSION_FLUSH_SIZE} activities: with a {@link ContentValues} and an autocommitted
+ * insertOrThrow per activity as before, and with the compiled statement of {@link ActivityTrackerDAO}, waiting
+ * for every save or queueing them so the database writer commits them together. Reports the inserts per second
+ * and the commits per 1000 activities; with a rollback journal every commit is a sync to disk.
+ * Not part of the unit tests, run it with {@code ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*ActivityInsertBenchmark'};
+ * the system properties benchmark.activities and benchmark.storageMode (ROLLBACK_JOURNAL or WRITE_AHEAD_LOG) configure it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ActivityInsertBenchmark
+{
+    private static final String DATABASE_NAME = "yonaInsertBenchmarkDB";
+    private static final int APPS = 50;
+    private static final int SAVE_SIZE = AppConstant.SESSION_FLUSH_SIZE;
+    private static final long ACTIVITY_DURATION = 30 * AppConstant.ONE_SECOND;
+
+    private static final int ACTIVITIES = Integer.getInteger("benchmark.activities", 5_000);
+    private static final StorageMode STORAGE_MODE = StorageMode.valueOf(System.getProperty("benchmark.storageMode", StorageMode.ROLLBACK_JOURNAL.name()));
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private ActivityTrackerDAO activityTrackerDAO;
+
+    @Before
+    public void setUp()
+    {
+        context = RuntimeEnvironment.getApplication();
+        new SharedPreference(context).setDatabaseStorageMode(STORAGE_MODE);
+        databaseHelper = DatabaseHelper.openSeparateDatabase(context, DATABASE_NAME);
+        activityTrackerDAO = new ActivityTrackerDAO(databaseHelper);
+    }
+
+    @After
+    public void tearDown()
+    {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void contentValuesPerActivity() throws JSONException
+    {
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+        long start = System.currentTimeMillis();
+        for (List<ActivityRecord> save : getSaves())
+        {
+            for (ActivityRecord activity : save)
+            {
+                // As before, outside a transaction each insert commits by itself.
+                db.insertOrThrow(DBConstant.TBL_ACTIVITY_TRACKER, null, getContentValues(activity));
+                Logger.logi(ActivityInsertBenchmark.class, "Activity inserted : " + getContentValues(activity).toString());
+            }
+        }
+        report("ContentValues per activity", System.currentTimeMillis() - start, ACTIVITIES);
+    }
+
+    @Test
+    public void compiledStatementPerSave() throws JSONException
+    {
+        long commitsBefore = databaseHelper.getWriter().getCommits();
+        long start = System.currentTimeMillis();
+        for (List<ActivityRecord> save : getSaves())
+        {
+            activityTrackerDAO.saveActivities(save);
+            activityTrackerDAO.awaitWrites();
+        }
+        report("Compiled statement, waiting for each save", System.currentTimeMillis() - start,
+                databaseHelper.getWriter().getCommits() - commitsBefore);
+    }
+
+    @Test
+    public void compiledStatementQueued() throws JSONException
+    {
+        long commitsBefore = databaseHelper.getWriter().getCommits();
+        long start = System.currentTimeMillis();
+        for (List<ActivityRecord> save : getSaves())
+        {
+            activityTrackerDAO.saveActivities(save);
+        }
+        activityTrackerDAO.awaitWrites();
+        report("Compiled statement, queued saves", System.currentTimeMillis() - start,
+                databaseHelper.getWriter().getCommits() - commitsBefore);
+    }
+
+    private void report(String path, long time, long commits) throws JSONException
+    {
+        assertEquals(ACTIVITIES, activityTrackerDAO.getActivityCount());
+        JSONObject results = new JSONObject();
+        results.put("path", path);
+        results.put("storageMode", databaseHelper.getStorageMode().name());
+        results.put("activities", ACTIVITIES);
+        results.put("timeMs", time);
+        results.put("insertsPerSecond", time == 0 ? 0 : ACTIVITIES * 1000L / time);
+        results.put("commitsPer1000Activities", commits * 1000.0 / ACTIVITIES);
+        System.out.println("Insert benchmark: " + results.toString(2));
+    }
+
+    private static List<List<ActivityRecord>> getSaves()
+    {
+        List<List<ActivityRecord>> saves = new ArrayList<>();
+        long startTime = System.currentTimeMillis() - ACTIVITIES * ACTIVITY_DURATION;
+        List<ActivityRecord> save = new ArrayList<>(SAVE_SIZE);
+        for (int i = 0; i < ACTIVITIES; i++)
+        {
+            save.add(new ActivityRecord(1 + i % APPS, startTime, startTime + ACTIVITY_DURATION));
+            startTime += ACTIVITY_DURATION;
+            if (save.size() == SAVE_SIZE || i == ACTIVITIES - 1)
+            {
+                saves.add(save);
+                save = new ArrayList<>(SAVE_SIZE);
+            }
+        }
+        return saves;
+    }
+
+    private static ContentValues getContentValues(ActivityRecord activity)
+    {
+        ContentValues values = new ContentValues();
+        values.put(DBConstant.APPLICATION_ID, activity.getApplicationId());
+        values.put(DBConstant.APPLICATION_START_TIME, activity.getStartTime());
+        values.put(DBConstant.APPLICATION_END_TIME, activity.getEndTime());
+        return values;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.impl;
+
+import android.content.Context;
+
+import com.yona.plugin.services.api.manager.network.ActivityNetworkImpl;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.api.model.ErrorMessage;
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.api.store.MemoryActivityStore;
+import com.yona.plugin.services.enums.UploadState;
+import com.yona.plugin.services.listener.DataLoadListener;
+import com.yona.plugin.services.state.SharedPreference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ActivityUploaderTest
+{
+    private static final int BAD_APP = 99;
+    private static final String BAD_PACKAGE = "com.example.bad";
+    private static final long START = 1_500_000_000_000L;
+    private static final long TIMEOUT = 10_000;
+
+    private final List<String> acceptedPackages = new ArrayList<>();
+    private Context context;
+    private ActivityStore store;
+    private UploadRetryScheduler retryScheduler;
+    private ActivityUploader uploader;
+    private volatile ErrorMessage badPackageError;
+
+    @Before
+    public void setUp()
+    {
+        context = RuntimeEnvironment.getApplication();
+        store = new MemoryActivityStore(applicationId -> applicationId == BAD_APP ? BAD_PACKAGE : "com.example.app" + applicationId, 100);
+        retryScheduler = new UploadRetryScheduler(context, 60_000, 60 * 60_000, 2);
+        uploader = new ActivityUploader(store, new FakeActivityNetwork(), getPreferences(), 1,
+                new UploadBatchSizer(8, 1, 8, 60_000, 1_000_000), retryScheduler);
+    }
+
+    @After
+    public void tearDown()
+    {
+        uploader.shutdown();
+    }
+
+    @Test
+    public void allBatchesAreAcknowledged() throws InterruptedException
+    {
+        append(20, -1);
+        uploadAndWait(() -> store.count() == 0);
+        assertEquals(0, store.count());
+        assertEquals(20, acceptedPackages.size());
+        assertFalse(retryScheduler.isBackingOff());
+    }
+
+    @Test
+    public void rejectedActivityIsDroppedAndTheOthersAreUploaded() throws InterruptedException
+    {
+        badPackageError = new ErrorMessage("Bad request", null, 400);
+        append(20, 6);
+        uploadAndWait(() -> store.count() == 0);
+        assertEquals(0, store.count());
+        assertEquals(19, acceptedPackages.size());
+        assertFalse(acceptedPackages.contains(BAD_PACKAGE));
+        // The retry state is cleared, so later uploads are triggered again.
+        assertFalse(retryScheduler.isBackingOff());
+        assertFalse(retryScheduler.hasPendingRetry());
+
+        append(20, 2, -1);
+        uploadAndWait(() -> store.count() == 0);
+        assertEquals(0, store.count());
+        assertEquals(21, acceptedPackages.size());
+    }
+
+    @Test
+    public void refusedClientKeepsActivitiesAndRetries() throws InterruptedException
+    {
+        badPackageError = new ErrorMessage("Unauthorized", null, 401);
+        append(4, 0);
+        uploadAndWait(retryScheduler::hasPendingRetry);
+        assertEquals(4, store.count());
+        assertTrue(retryScheduler.hasPendingRetry());
+        assertTrue(retryScheduler.isBackingOff());
+    }
+
+    private void append(int count, int badIndex)
+    {
+        append(0, count, badIndex);
+    }
+
+    private void append(int firstIndex, int count, int badIndex)
+    {
+        List<ActivityRecord> activities = new ArrayList<>();
+        for (int index = firstIndex; index < firstIndex + count; index++)
+        {
+            long startTime = START + index * 60_000L;
+            activities.add(new ActivityRecord(index == badIndex ? BAD_APP : index % 10 + 1, startTime, startTime + 30_000));
+        }
+        store.append(activities);
+    }
+
+    private void uploadAndWait(BooleanSupplier done) throws InterruptedException
+    {
+        uploader.requestUpload();
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!done.getAsBoolean() || uploader.getState() != UploadState.IDLE)
+        {
+            assertTrue("Upload did not finish", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private SharedPreference getPreferences()
+    {
+        return new SharedPreference(context)
+        {
+            @Override
+            public String getServerUrl()
+            {
+                return "https://example.com/";
+            }
+
+            @Override
+            public String getAppActivityUrl()
+            {
+                return "https://example.com/activities";
+            }
+
+            @Override
+            public String getYonaPassword()
+            {
+                return "password";
+            }
+        };
+    }
+
+    /**
+     * Accepts every request, unless it holds the bad package and an error is set for it.
+     */
+    private class FakeActivityNetwork extends ActivityNetworkImpl
+    {
+        private FakeActivityNetwork()
+        {
+            super(context, getPreferences());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void postAppActivity(String url, String yonaPassword, RequestBody body, DataLoadListener listener)
+        {
+            String json;
+            try
+            {
+                Buffer buffer = new Buffer();
+                body.writeTo(buffer);
+                json = buffer.readUtf8();
+            }
+            catch (IOException e)
+            {
+                listener.onError(new ErrorMessage(e.getMessage()));
+                return;
+            }
+            if (badPackageError != null && json.contains(BAD_PACKAGE))
+            {
+                listener.onError(badPackageError);
+                return;
+            }
+            synchronized (acceptedPackages)
+            {
+                for (int start = json.indexOf("\"application\":\""); start >= 0; start = json.indexOf("\"application\":\"", start + 1))
+                {
+                    int nameStart = start + "\"application\":\"".length();
+                    acceptedPackages.add(json.substring(nameStart, json.indexOf('"', nameStart)));
+                }
+            }
+            listener.onDataLoad(null);
+        }
+    }
+}
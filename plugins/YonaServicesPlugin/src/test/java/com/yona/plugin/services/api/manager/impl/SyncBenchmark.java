@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.impl;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.yona.plugin.services.api.db.DBConstant;
+import com.yona.plugin.services.api.db.DatabaseHelper;
+import com.yona.plugin.services.api.manager.dao.ActivityTrackerDAO;
+import com.yona.plugin.services.api.manager.network.ActivityNetworkImpl;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.api.store.FileLogActivityStore;
+import com.yona.plugin.services.api.store.MemoryActivityStore;
+import com.yona.plugin.services.api.store.PackageNameResolver;
+import com.yona.plugin.services.api.store.SqliteActivityStore;
+import com.yona.plugin.services.enums.ActivityStoreType;
+import com.yona.plugin.services.enums.UploadState;
+import com.yona.plugin.services.state.SharedPreference;
+import com.yona.plugin.services.utils.AppConstant;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the upload pipeline end to end against a {@link MockWebServer}: fills an activity store with
+ * activities, uploads them with an {@link ActivityUploader} and reports how long draining the store took, how
+ * many requests and bytes it cost and the peak heap use meanwhile. Filling the store reports the append rate,
+ * for the database also the commits per 1000 activities and the database writer metrics.
+ * The server answers after a latency plus the time the request body takes at a bandwidth, and fails a share
+ * of the posts with a 503. A failed upload is started again right away instead of after the retry delay.
+ * Not part of the unit tests, run it with {@code ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*SyncBenchmark'};
+ * the system properties benchmark.activities, benchmark.latency (ms), benchmark.errorRate (0 to 1) and
+ * benchmark.bytesPerSecond (0 for no limit) configure it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncBenchmark
+{
+    private static final String DATABASE_NAME = "yonaBenchmarkDB";
+    private static final String LOG_DIRECTORY = "activityLogBenchmark";
+    private static final String APP_ACTIVITY_PATH = "/benchmark/appActivity/";
+    private static final int APPS = 50;
+    private static final int INSERT_CHUNK = 1000;
+    private static final long ACTIVITY_DURATION = 30 * AppConstant.ONE_SECOND;
+    private static final long POLL_INTERVAL = 20;
+    private static final long TIMEOUT = 10 * 60 * AppConstant.ONE_SECOND;
+    private static final PackageNameResolver BENCHMARK_APPS = applicationId -> "com.example.benchmark.app" + applicationId;
+
+    private static final int ACTIVITIES = Integer.getInteger("benchmark.activities", 10_000);
+    private static final long LATENCY = Long.getLong("benchmark.latency", 100);
+    private static final double ERROR_RATE = Double.parseDouble(System.getProperty("benchmark.errorRate", "0"));
+    private static final long BYTES_PER_SECOND = Long.getLong("benchmark.bytesPerSecond", 0);
+
+    private final Random random = new Random();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private Context context;
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        context = RuntimeEnvironment.getApplication();
+        // MockWebServer logs every request.
+        java.util.logging.Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException
+            {
+                long size = request.getBodySize();
+                bytesReceived.addAndGet(size);
+                Thread.sleep(LATENCY + (BYTES_PER_SECOND > 0 ? size * 1000 / BYTES_PER_SECOND : 0));
+                if (!"POST".equals(request.getMethod()))
+                {
+                    return new MockResponse().setResponseCode(404);
+                }
+                if (random.nextDouble() < ERROR_RATE)
+                {
+                    errors.incrementAndGet();
+                    return new MockResponse().setResponseCode(503);
+                }
+                return new MockResponse().setResponseCode(200).setBody("");
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.shutdown();
+    }
+
+    @Test
+    public void sqlite() throws JSONException, IOException
+    {
+        run(ActivityStoreType.SQLITE);
+    }
+
+    @Test
+    public void memory() throws JSONException, IOException
+    {
+        run(ActivityStoreType.MEMORY);
+    }
+
+    @Test
+    public void fileLog() throws JSONException, IOException
+    {
+        run(ActivityStoreType.FILE_LOG);
+    }
+
+    private void run(ActivityStoreType storeType) throws JSONException, IOException
+    {
+        DatabaseHelper databaseHelper = null;
+        File logDirectory = new File(context.getCacheDir(), LOG_DIRECTORY);
+        ActivityStore activityStore;
+        switch (storeType)
+        {
+            case MEMORY:
+                activityStore = new MemoryActivityStore(BENCHMARK_APPS, Math.max(ACTIVITIES, 1));
+                break;
+            case FILE_LOG:
+                activityStore = new FileLogActivityStore(logDirectory, BENCHMARK_APPS, AppConstant.ACTIVITY_LOG_SEGMENT_RECORDS);
+                break;
+            default:
+                databaseHelper = DatabaseHelper.openSeparateDatabase(context, DATABASE_NAME);
+                insertApps(databaseHelper);
+                activityStore = new SqliteActivityStore(new ActivityTrackerDAO(databaseHelper));
+                break;
+        }
+        SharedPreference preferences = getMockPreferences();
+        ActivityUploader activityUploader = new ActivityUploader(activityStore, new ActivityNetworkImpl(context, preferences),
+                preferences, AppConstant.UPLOAD_MAX_IN_FLIGHT,
+                new UploadBatchSizer(AppConstant.UPLOAD_BATCH_INITIAL_SIZE, AppConstant.UPLOAD_BATCH_MIN_SIZE, AppConstant.UPLOAD_BATCH_MAX_SIZE,
+                        AppConstant.UPLOAD_TARGET_LATENCY, AppConstant.UPLOAD_MAX_PAYLOAD_BYTES),
+                getImmediateRetryScheduler());
+        try
+        {
+            long commitsBefore = databaseHelper != null ? databaseHelper.getWriter().getCommits() : 0;
+            long fillStart = System.currentTimeMillis();
+            fill(activityStore, ACTIVITIES);
+            long fillTime = System.currentTimeMillis() - fillStart;
+
+            long heapBefore = getUsedHeap();
+            long peakHeap = heapBefore;
+            int uploads = 1;
+            long start = System.currentTimeMillis();
+            activityUploader.requestUpload();
+            long remaining;
+            while (true)
+            {
+                waitForCallbacks();
+                peakHeap = Math.max(peakHeap, getUsedHeap());
+                if (activityUploader.getState() != UploadState.IDLE)
+                {
+                    continue;
+                }
+                remaining = activityStore.count();
+                if (remaining == 0 || System.currentTimeMillis() - start > TIMEOUT)
+                {
+                    break;
+                }
+                uploads++;
+                activityUploader.requestUpload();
+            }
+            long drainTime = System.currentTimeMillis() - start;
+
+            JSONObject results = new JSONObject();
+            results.put("store", storeType.name());
+            results.put("activities", ACTIVITIES);
+            results.put("remainingActivities", remaining);
+            results.put("fillTimeMs", fillTime);
+            results.put("insertsPerSecond", fillTime == 0 ? 0 : ACTIVITIES * 1000L / fillTime);
+            results.put("drainTimeMs", drainTime);
+            results.put("activitiesPerSecond", drainTime == 0 ? 0 : (ACTIVITIES - remaining) * 1000 / drainTime);
+            results.put("uploads", uploads);
+            results.put("requests", server.getRequestCount());
+            results.put("errors", errors.get());
+            results.put("bytesSent", bytesReceived.get());
+            results.put("compression", preferences.isRequestCompressionEnabled());
+            if (databaseHelper != null)
+            {
+                // With a rollback journal every commit syncs to disk, with write-ahead logging only checkpoints do.
+                long fillCommits = databaseHelper.getWriter().getCommits() - commitsBefore;
+                results.put("commitsPer1000Activities", ACTIVITIES == 0 ? 0 : fillCommits * 1000.0 / ACTIVITIES);
+                results.put("storageMode", databaseHelper.getStorageMode().name());
+                results.put("databaseWriter", databaseHelper.getWriter().toJson());
+            }
+            results.put("heapBeforeBytes", heapBefore);
+            results.put("peakHeapBytes", peakHeap);
+            System.out.println("Sync benchmark: " + results.toString(2));
+            assertEquals(0, remaining);
+        }
+        finally
+        {
+            activityUploader.shutdown();
+            activityStore.close();
+            if (databaseHelper != null)
+            {
+                databaseHelper.close();
+                context.deleteDatabase(DATABASE_NAME);
+            }
+        }
+    }
+
+    private static void insertApps(DatabaseHelper databaseHelper)
+    {
+        databaseHelper.getWriter().execute(db ->
+        {
+            ContentValues values = new ContentValues();
+            for (int appId = 1; appId <= APPS; appId++)
+            {
+                values.put(DBConstant.APP_ID, appId);
+                values.put(DBConstant.PACKAGE_NAME, BENCHMARK_APPS.getPackageName(appId));
+                db.insertWithOnConflict(DBConstant.TBL_APPS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            return null;
+        });
+    }
+
+    private static void fill(ActivityStore activityStore, int activities)
+    {
+        long startTime = System.currentTimeMillis() - activities * ACTIVITY_DURATION;
+        List<ActivityRecord> chunk = new ArrayList<>(INSERT_CHUNK);
+        for (int i = 0; i < activities; i++)
+        {
+            chunk.add(new ActivityRecord(1 + i % APPS, startTime, startTime + ACTIVITY_DURATION));
+            startTime += ACTIVITY_DURATION;
+            if (chunk.size() == INSERT_CHUNK || i == activities - 1)
+            {
+                activityStore.append(chunk);
+                chunk.clear();
+            }
+        }
+        activityStore.flush();
+    }
+
+    private static long getUsedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void waitForCallbacks()
+    {
+        try
+        {
+            Thread.sleep(POLL_INTERVAL);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        // The responses are delivered on the main looper, which only runs when the test thread lets it.
+        ShadowLooper.idleMainLooper();
+    }
+
+    private SharedPreference getMockPreferences()
+    {
+        String serverUrl = server.url("/").toString();
+        String appActivityUrl = server.url(APP_ACTIVITY_PATH).toString();
+        return new SharedPreference(context)
+        {
+            @Override
+            public String getServerUrl()
+            {
+                return serverUrl;
+            }
+
+            @Override
+            public String getAppActivityUrl()
+            {
+                return appActivityUrl;
+            }
+
+            @Override
+            public String getYonaPassword()
+            {
+                return "benchmark";
+            }
+        };
+    }
+
+    private UploadRetryScheduler getImmediateRetryScheduler()
+    {
+        // The benchmark starts failed uploads again itself, no alarms or retry state.
+        return new UploadRetryScheduler(context)
+        {
+            @Override
+            public synchronized void onUploadSucceeded()
+            {
+            }
+
+            @Override
+            public synchronized boolean onUploadFailed(long batchId, Object error)
+            {
+                return false;
+            }
+        };
+    }
+}
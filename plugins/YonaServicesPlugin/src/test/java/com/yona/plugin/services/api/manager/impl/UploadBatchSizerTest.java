@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadBatchSizerTest
+{
+    private static final long TARGET_LATENCY = 1_000;
+    private static final long MAX_PAYLOAD_BYTES = 100_000;
+
+    private final UploadBatchSizer sizer = new UploadBatchSizer(100, 10, 1_000, TARGET_LATENCY, MAX_PAYLOAD_BYTES);
+
+    @Test
+    public void initialSizeIsClamped()
+    {
+        assertEquals(10, new UploadBatchSizer(1, 10, 1_000, TARGET_LATENCY, MAX_PAYLOAD_BYTES).getBatchSize());
+        assertEquals(1_000, new UploadBatchSizer(5_000, 10, 1_000, TARGET_LATENCY, MAX_PAYLOAD_BYTES).getBatchSize());
+    }
+
+    @Test
+    public void fastFullBatchGrowsByAQuarter()
+    {
+        sizer.onSuccess(100, 1_000, 100);
+        assertEquals(125, sizer.getBatchSize());
+    }
+
+    @Test
+    public void shortBatchDoesNotGrow()
+    {
+        sizer.onSuccess(40, 400, 100);
+        assertEquals(100, sizer.getBatchSize());
+    }
+
+    @Test
+    public void slowBatchShrinksByAQuarter()
+    {
+        sizer.onSuccess(100, 1_000, TARGET_LATENCY + 1);
+        assertEquals(75, sizer.getBatchSize());
+    }
+
+    @Test
+    public void slowBatchesShrinkDownToMinimum()
+    {
+        for (int i = 0; i < 20; i++)
+        {
+            sizer.onSuccess(sizer.getBatchSize(), sizer.getBatchSize() * 10L, TARGET_LATENCY * 2);
+        }
+        assertEquals(10, sizer.getBatchSize());
+    }
+
+    @Test
+    public void failureHalvesDownToMinimum()
+    {
+        sizer.onFailure();
+        assertEquals(50, sizer.getBatchSize());
+        for (int i = 0; i < 10; i++)
+        {
+            sizer.onFailure();
+        }
+        assertEquals(10, sizer.getBatchSize());
+    }
+
+    @Test
+    public void growthSlowsAfterFailures()
+    {
+        sizer.onFailure();
+        sizer.onSuccess(50, 500, 100);
+        // A quarter of 50 is 12, reduced by the error rate, which is 0.16 after the success.
+        assertEquals(60, sizer.getBatchSize());
+    }
+
+    @Test
+    public void growthStopsAtMaximum()
+    {
+        for (int i = 0; i < 50; i++)
+        {
+            sizer.onSuccess(sizer.getBatchSize(), sizer.getBatchSize() * 10L, 100);
+        }
+        assertEquals(1_000, sizer.getBatchSize());
+    }
+
+    @Test
+    public void sizeStaysWithinPayloadLimit()
+    {
+        // 500 bytes per row, so at most 200 rows fit the payload limit.
+        for (int i = 0; i < 50; i++)
+        {
+            sizer.onSuccess(sizer.getBatchSize(), sizer.getBatchSize() * 500L, 100);
+        }
+        assertEquals(200, sizer.getBatchSize());
+        assertTrue(sizer.getBatchSize() * 500L <= MAX_PAYLOAD_BYTES);
+    }
+
+    @Test
+    public void largerRowsLowerThePayloadLimit()
+    {
+        sizer.onSuccess(100, 100 * 500L, 100);
+        assertEquals(125, sizer.getBatchSize());
+        // The average grows to 900 bytes per row, so at most 111 rows fit the payload limit.
+        sizer.onSuccess(125, 125 * 2_500L, 100);
+        assertEquals(111, sizer.getBatchSize());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.impl;
+
+import com.yona.plugin.services.api.model.ErrorMessage;
+import com.yona.plugin.services.enums.UploadErrorType;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class UploadRetrySchedulerTest
+{
+    private static final int MAX_ATTEMPTS = 2;
+
+    private UploadRetryScheduler scheduler;
+
+    @Before
+    public void setUp()
+    {
+        scheduler = new UploadRetryScheduler(RuntimeEnvironment.getApplication(), 1_000, 60_000, MAX_ATTEMPTS);
+    }
+
+    @Test
+    public void classifyWithoutResponseIsNetwork()
+    {
+        assertEquals(UploadErrorType.NETWORK, UploadRetryScheduler.classify(null));
+        assertEquals(UploadErrorType.NETWORK, UploadRetryScheduler.classify("timeout"));
+        assertEquals(UploadErrorType.NETWORK, UploadRetryScheduler.classify(new ErrorMessage("No connection")));
+    }
+
+    @Test
+    public void classifyTransientStatusIsServer()
+    {
+        assertEquals(UploadErrorType.SERVER, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 500)));
+        assertEquals(UploadErrorType.SERVER, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 503)));
+        assertEquals(UploadErrorType.SERVER, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 408)));
+        assertEquals(UploadErrorType.SERVER, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 429)));
+    }
+
+    @Test
+    public void classifyRejectedActivitiesIsClient()
+    {
+        assertEquals(UploadErrorType.CLIENT, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 400)));
+        assertEquals(UploadErrorType.CLIENT, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 413)));
+        assertEquals(UploadErrorType.CLIENT, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 422)));
+    }
+
+    @Test
+    public void classifyOtherStatusIsRefused()
+    {
+        assertEquals(UploadErrorType.REFUSED, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 401)));
+        assertEquals(UploadErrorType.REFUSED, UploadRetryScheduler.classify(new ErrorMessage("Error", null, 404)));
+    }
+
+    @Test
+    public void transientFailureSchedulesRetry()
+    {
+        assertFalse(scheduler.onUploadFailed(1, new ErrorMessage("Error", null, 503)));
+        assertTrue(scheduler.hasPendingRetry());
+        assertTrue(scheduler.isBackingOff());
+        scheduler.onUploadSucceeded();
+        assertFalse(scheduler.hasPendingRetry());
+        assertFalse(scheduler.isBackingOff());
+    }
+
+    @Test
+    public void clientFailureIsPermanentAndClearsRetryState()
+    {
+        scheduler.onUploadFailed(1, new ErrorMessage("Error", null, 503));
+        assertTrue(scheduler.onUploadFailed(1, new ErrorMessage("Error", null, 400)));
+        assertFalse(scheduler.hasPendingRetry());
+        assertFalse(scheduler.isBackingOff());
+    }
+
+    @Test
+    public void serverFailureIsPermanentAfterMaxAttempts()
+    {
+        ErrorMessage error = new ErrorMessage("Error", null, 500);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++)
+        {
+            assertFalse(scheduler.onUploadFailed(1, error));
+            assertTrue(scheduler.hasPendingRetry());
+        }
+        assertTrue(scheduler.onUploadFailed(1, error));
+        assertFalse(scheduler.isBackingOff());
+        // Another batch starts counting again.
+        assertFalse(scheduler.onUploadFailed(2, error));
+        assertTrue(scheduler.hasPendingRetry());
+    }
+
+    @Test
+    public void networkAndRefusedFailuresAreRetriedWithoutLimit()
+    {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS * 2; attempt++)
+        {
+            assertFalse(scheduler.onUploadFailed(1, null));
+            assertFalse(scheduler.onUploadFailed(1, new ErrorMessage("Error", null, 401)));
+        }
+        assertTrue(scheduler.hasPendingRetry());
+    }
+}
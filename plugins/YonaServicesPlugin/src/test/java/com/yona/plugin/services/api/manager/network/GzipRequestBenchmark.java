@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.manager.network;
+
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.api.store.MemoryActivityStore;
+import com.yona.plugin.services.state.SharedPreference;
+import com.yona.plugin.services.utils.MicroBenchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the bytes on the wire and the time of activity uploads of 100 and 1000 activities, with and without
+ * request compression. The requests go through {@link GzipRequestInterceptor} to a {@link MockWebServer}. The
+ * upload time on the loopback interface mostly shows the cost of compressing, so the time the body takes on a
+ * slow mobile connection is printed as well.
+ * Not part of the unit tests, run it with {@code ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*GzipRequestBenchmark'}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GzipRequestBenchmark
+{
+    private static final int APPS = 30;
+    private static final int ITERATIONS = 200;
+    private static final long SLOW_BYTES_PER_SECOND = 1_000_000 / 8;
+    private static final long START = 1_500_000_000_000L;
+
+    private MockWebServer server;
+    private ActivityStore activityStore;
+    private boolean compression;
+    private OkHttpClient httpClient;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // MockWebServer logs every request.
+        Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+            {
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        server.start();
+        SharedPreference preferences = new SharedPreference(RuntimeEnvironment.getApplication())
+        {
+            @Override
+            public boolean isRequestCompressionEnabled()
+            {
+                return compression;
+            }
+        };
+        httpClient = new OkHttpClient.Builder().addInterceptor(new GzipRequestInterceptor(preferences)).build();
+        activityStore = new MemoryActivityStore(applicationId -> "com.example.popular.app" + applicationId, 1000);
+        List<ActivityRecord> activities = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            long startTime = START + i * 60_000L;
+            activities.add(new ActivityRecord(1 + i % APPS, startTime, startTime + 45_000));
+        }
+        activityStore.append(activities);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.shutdown();
+    }
+
+    @Test
+    public void hundredActivities() throws Exception
+    {
+        measure(100);
+    }
+
+    @Test
+    public void thousandActivities() throws Exception
+    {
+        measure(1000);
+    }
+
+    private void measure(int activities) throws Exception
+    {
+        ActivityBatch batch = activityStore.readBatch(0, activities);
+        compression = false;
+        long plainBytes = post(batch);
+        double plainTime = MicroBenchmark.measure(activities + " activities, plain", ITERATIONS, i -> post(batch));
+        compression = true;
+        long compressedBytes = post(batch);
+        double compressedTime = MicroBenchmark.measure(activities + " activities, gzip", ITERATIONS, i -> post(batch));
+        System.out.println(String.format("%d activities: %d bytes plain, %d bytes gzip (%.1f%%)", activities, plainBytes,
+                compressedBytes, compressedBytes * 100.0 / plainBytes));
+        System.out.println(String.format("%d activities at 1 Mbit/s: %.1f ms plain, %.1f ms gzip", activities,
+                plainTime / 1e6 + plainBytes * 1000.0 / SLOW_BYTES_PER_SECOND,
+                compressedTime / 1e6 + compressedBytes * 1000.0 / SLOW_BYTES_PER_SECOND));
+        assertTrue(compressedBytes < plainBytes);
+    }
+
+    private long post(ActivityBatch batch) throws IOException, InterruptedException
+    {
+        Request request = new Request.Builder()
+                .url(server.url("/appActivity/"))
+                .header(NetworkConstant.COMPRESS_REQUEST, NetworkConstant.GZIP)
+                .post(new ActivityBatchRequestBody(activityStore, batch))
+                .build();
+        try (Response response = httpClient.newCall(request).execute())
+        {
+            assertEquals(200, response.code());
+        }
+        RecordedRequest recorded = server.takeRequest();
+        assertEquals(compression ? NetworkConstant.GZIP : null, recorded.getHeader("Content-Encoding"));
+        return recorded.getBodySize();
+    }
+}
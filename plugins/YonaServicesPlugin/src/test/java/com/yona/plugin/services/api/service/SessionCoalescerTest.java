@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.service;
+
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.store.ActivityStore;
+import com.yona.plugin.services.api.store.MemoryActivityStore;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SessionCoalescerTest
+{
+	private static final long MERGE_GAP = 5_000;
+	private static final long MIN_DURATION = 1_000;
+	private static final int FLUSH_SIZE = 3;
+	private static final long FLUSH_INTERVAL = 60_000;
+	private static final long START = 1_500_000_000_000L;
+
+	private ActivityStore store;
+	private SessionCoalescer coalescer;
+
+	@Before
+	public void setUp()
+	{
+		store = new MemoryActivityStore(applicationId -> "com.example.app" + applicationId, 100);
+		coalescer = new SessionCoalescer(store, MERGE_GAP, MIN_DURATION, FLUSH_SIZE, FLUSH_INTERVAL);
+	}
+
+	@Test
+	public void sessionsAreBufferedUntilFlush() throws IOException
+	{
+		assertFalse(coalescer.add(1, START, START + 10_000));
+		assertEquals(0, store.count());
+		coalescer.flush();
+		assertEquals(1, readSessions().size());
+	}
+
+	@Test
+	public void shortSessionsAreDropped() throws IOException
+	{
+		coalescer.add(1, START, START + MIN_DURATION - 1);
+		coalescer.flush();
+		assertEquals(0, store.count());
+	}
+
+	@Test
+	public void sessionsWithinMergeGapAreMerged() throws IOException
+	{
+		coalescer.add(1, START, START + 10_000);
+		coalescer.add(1, START + 10_000 + MERGE_GAP, START + 20_000);
+		coalescer.flush();
+		List<long[]> sessions = readSessions();
+		assertEquals(1, sessions.size());
+		assertArrayEquals(new long[]{1, START, START + 20_000}, sessions.get(0));
+	}
+
+	@Test
+	public void sessionsOfOtherAppsOrAfterGapAreNotMerged() throws IOException
+	{
+		coalescer.add(1, START, START + 10_000);
+		coalescer.add(2, START + 11_000, START + 20_000);
+		coalescer.add(2, START + 20_000 + MERGE_GAP + 1, START + 30_000);
+		coalescer.flush();
+		assertEquals(3, readSessions().size());
+	}
+
+	@Test
+	public void fullBufferIsFlushed()
+	{
+		assertFalse(coalescer.add(1, START, START + 10_000));
+		assertFalse(coalescer.add(2, START + 10_000, START + 20_000));
+		assertTrue(coalescer.add(3, START + 20_000, START + 30_000));
+		assertEquals(3, store.count());
+	}
+
+	@Test
+	public void flushIfDueWaitsForInterval()
+	{
+		assertFalse(coalescer.flushIfDue());
+		coalescer.add(1, START, START + 10_000);
+		assertFalse(coalescer.flushIfDue());
+		assertEquals(0, store.count());
+		ShadowSystemClock.advanceBy(Duration.ofMillis(FLUSH_INTERVAL));
+		assertTrue(coalescer.flushIfDue());
+		assertEquals(1, store.count());
+	}
+
+	@Test
+	public void writtenSessionIsNotMerged() throws IOException
+	{
+		coalescer.add(1, START, START + 10_000);
+		ShadowSystemClock.advanceBy(Duration.ofMillis(FLUSH_INTERVAL));
+		assertTrue(coalescer.flushIfDue());
+		coalescer.add(1, START + 12_000, START + 20_000);
+		coalescer.flush();
+		List<long[]> sessions = readSessions();
+		assertEquals(2, sessions.size());
+		assertArrayEquals(new long[]{1, START, START + 10_000}, sessions.get(0));
+		assertArrayEquals(new long[]{1, START + 12_000, START + 20_000}, sessions.get(1));
+	}
+
+	@Test
+	public void fullBufferIsNotMergedAfterFlush() throws IOException
+	{
+		coalescer.add(1, START, START + 10_000);
+		coalescer.add(2, START + 10_000, START + 20_000);
+		assertTrue(coalescer.add(3, START + 20_000, START + 30_000));
+		coalescer.add(3, START + 31_000, START + 40_000);
+		coalescer.flush();
+		assertEquals(4, readSessions().size());
+	}
+
+	@Test
+	public void sessionsAfterFlushAreNotMerged() throws IOException
+	{
+		coalescer.add(1, START, START + 10_000);
+		coalescer.flush();
+		coalescer.add(1, START + 12_000, START + 20_000);
+		coalescer.flush();
+		assertEquals(2, readSessions().size());
+	}
+
+	private List<long[]> readSessions() throws IOException
+	{
+		List<long[]> sessions = new ArrayList<>();
+		ActivityBatch batch = store.readBatch(0, 100);
+		if (batch != null)
+		{
+			store.readActivities(batch, (packageName, startTime, endTime) ->
+					sessions.add(new long[]{Long.parseLong(packageName.substring("com.example.app".length())), startTime, endTime}));
+		}
+		return sessions;
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The behavior every {@link ActivityStore} shares, run against each backend by a subclass.
+ */
+@RunWith(RobolectricTestRunner.class)
+public abstract class ActivityStoreConformanceTest
+{
+    /**
+     * The number of applications the activities are spread over, with the ids 1 to APPS.
+     */
+    protected static final int APPS = 10;
+
+    /**
+     * The package names of the applications.
+     */
+    protected static final PackageNameResolver PACKAGE_NAMES = applicationId -> "com.example.app" + applicationId;
+
+    private static final long START = 1_500_000_000_000L;
+    private static final int DRAIN_ACTIVITIES = 10_000;
+    private static final int DRAIN_BATCH_SIZE = 500;
+    private static final long DRAIN_MAX_TIME = 30_000;
+
+    /**
+     * The store under test.
+     */
+    protected ActivityStore store;
+
+    /**
+     * Opens the store, with the activities of a previous store if it is persistent.
+     *
+     * @return the store
+     * @throws IOException the io exception
+     */
+    protected abstract ActivityStore openStore() throws IOException;
+
+    /**
+     * Tells whether the activities survive closing the store.
+     *
+     * @return true if a reopened store has the activities of the closed one
+     */
+    protected abstract boolean isPersistent();
+
+    @Before
+    public void setUp() throws IOException
+    {
+        store = openStore();
+    }
+
+    @After
+    public void tearDown()
+    {
+        store.close();
+    }
+
+    @Test
+    public void emptyStore()
+    {
+        assertEquals(0, store.count());
+        assertEquals(0, store.oldestTimestamp());
+        assertNull(store.readBatch(0, 10));
+    }
+
+    @Test
+    public void appendAndCount()
+    {
+        append(5);
+        assertEquals(5, store.count());
+    }
+
+    @Test
+    public void readBatchInOrderUpToLimit() throws IOException
+    {
+        append(5);
+        ActivityBatch batch = store.readBatch(0, 3);
+        assertNotNull(batch);
+        assertEquals(3, batch.getSize());
+        assertTrue(batch.getFirstId() < batch.getLastId());
+        assertEquals(Arrays.asList(0, 1, 2), readIndexes(batch));
+        assertEquals(3 * PACKAGE_NAMES.getPackageName(1).length(), batch.getPackageNameBytes());
+
+        ActivityBatch next = store.readBatch(batch.getLastId(), 3);
+        assertNotNull(next);
+        assertEquals(2, next.getSize());
+        assertTrue(next.getFirstId() > batch.getLastId());
+        assertEquals(Arrays.asList(3, 4), readIndexes(next));
+        assertNull(store.readBatch(next.getLastId(), 3));
+    }
+
+    @Test
+    public void ackRemovesActivities() throws IOException
+    {
+        append(5);
+        ActivityBatch batch = store.readBatch(0, 3);
+        store.ack(batch.getFirstId(), batch.getLastId());
+        assertEquals(2, store.count());
+        assertEquals(Arrays.asList(3, 4), readIndexes(store.readBatch(0, 10)));
+        assertEquals(Collections.emptyList(), readIndexes(batch));
+    }
+
+    @Test
+    public void ackOutOfOrder() throws IOException
+    {
+        append(6);
+        ActivityBatch first = store.readBatch(0, 2);
+        ActivityBatch second = store.readBatch(first.getLastId(), 2);
+        ActivityBatch third = store.readBatch(second.getLastId(), 2);
+        store.ack(second.getFirstId(), second.getLastId());
+        assertEquals(4, store.count());
+        assertEquals(Arrays.asList(0, 1, 4, 5), readIndexes(store.readBatch(0, 10)));
+        store.ack(third.getFirstId(), third.getLastId());
+        store.ack(first.getFirstId(), first.getLastId());
+        assertEquals(0, store.count());
+        assertNull(store.readBatch(0, 10));
+        assertEquals(0, store.oldestTimestamp());
+    }
+
+    @Test
+    public void ackTwiceCountsOnce()
+    {
+        append(3);
+        ActivityBatch batch = store.readBatch(0, 2);
+        store.ack(batch.getFirstId(), batch.getLastId());
+        store.ack(batch.getFirstId(), batch.getLastId());
+        assertEquals(1, store.count());
+    }
+
+    @Test
+    public void sameApplicationAndStartTimeReplaces() throws IOException
+    {
+        append(2);
+        ActivityBatch before = store.readBatch(0, 10);
+        store.append(Collections.singletonList(new ActivityRecord(1, start(0), start(0) + 5_000)));
+        store.flush();
+        assertEquals(2, store.count());
+        // The replaced activity is skipped by a batch read before.
+        assertEquals(Collections.singletonList(1), readIndexes(before));
+        ActivityBatch after = store.readBatch(0, 10);
+        List<long[]> activities = read(after);
+        assertEquals(2, activities.size());
+        assertEquals(start(1), activities.get(0)[0]);
+        assertEquals(start(0), activities.get(1)[0]);
+        assertEquals(start(0) + 5_000, activities.get(1)[1]);
+        assertTrue(after.getLastId() > before.getLastId());
+    }
+
+    @Test
+    public void oldestTimestamp()
+    {
+        append(3);
+        assertEquals(end(0), store.oldestTimestamp());
+        ActivityBatch batch = store.readBatch(0, 1);
+        store.ack(batch.getFirstId(), batch.getLastId());
+        assertEquals(end(1), store.oldestTimestamp());
+    }
+
+    @Test
+    public void reopenKeepsActivitiesAndAcks() throws IOException
+    {
+        Assume.assumeTrue(isPersistent());
+        append(5);
+        ActivityBatch batch = store.readBatch(0, 2);
+        store.ack(batch.getFirstId(), batch.getLastId());
+        store.close();
+        store = openStore();
+        assertEquals(3, store.count());
+        ActivityBatch reopened = store.readBatch(0, 10);
+        assertTrue(reopened.getFirstId() > batch.getLastId());
+        assertEquals(Arrays.asList(2, 3, 4), readIndexes(reopened));
+        assertEquals(end(2), store.oldestTimestamp());
+
+        append(5, 1);
+        ActivityBatch appended = store.readBatch(reopened.getLastId(), 10);
+        assertEquals(Collections.singletonList(5), readIndexes(appended));
+    }
+
+    @Test
+    public void drain() throws IOException
+    {
+        long start = System.currentTimeMillis();
+        append(DRAIN_ACTIVITIES);
+        assertEquals(DRAIN_ACTIVITIES, store.count());
+        int read = 0;
+        List<String> packageNames = new ArrayList<>();
+        for (int batches = 0; batches <= DRAIN_ACTIVITIES / DRAIN_BATCH_SIZE; batches++)
+        {
+            ActivityBatch batch = store.readBatch(0, DRAIN_BATCH_SIZE);
+            if (batch == null)
+            {
+                break;
+            }
+            packageNames.clear();
+            store.readActivities(batch, (packageName, startTime, endTime) -> packageNames.add(packageName));
+            assertEquals(batch.getSize(), packageNames.size());
+            read += packageNames.size();
+            store.ack(batch.getFirstId(), batch.getLastId());
+        }
+        assertEquals(DRAIN_ACTIVITIES, read);
+        assertEquals(0, store.count());
+        assertNull(store.readBatch(0, DRAIN_BATCH_SIZE));
+        long time = System.currentTimeMillis() - start;
+        assertTrue("Draining took " + time + " ms", time < DRAIN_MAX_TIME);
+    }
+
+    /**
+     * Appends activities and waits until they can be read.
+     *
+     * @param count the number of activities
+     */
+    protected void append(int count)
+    {
+        append(0, count);
+    }
+
+    /**
+     * Appends activities and waits until they can be read. The activity with an index has its start time
+     * from {@link #start(int)} and end time from {@link #end(int)}.
+     *
+     * @param firstIndex the index of the first activity
+     * @param count      the number of activities
+     */
+    protected void append(int firstIndex, int count)
+    {
+        List<ActivityRecord> activities = new ArrayList<>(count);
+        for (int index = firstIndex; index < firstIndex + count; index++)
+        {
+            activities.add(new ActivityRecord(index % APPS + 1, start(index), end(index)));
+        }
+        store.append(activities);
+        store.flush();
+    }
+
+    /**
+     * Reads the indexes of the activities of a batch.
+     *
+     * @param batch the batch
+     * @return the indexes, in the order they were read
+     * @throws IOException the io exception
+     */
+    protected List<Integer> readIndexes(ActivityBatch batch) throws IOException
+    {
+        List<Integer> indexes = new ArrayList<>();
+        for (long[] activity : read(batch))
+        {
+            indexes.add((int) ((activity[0] - START) / 60_000));
+        }
+        return indexes;
+    }
+
+    private List<long[]> read(ActivityBatch batch) throws IOException
+    {
+        List<long[]> activities = new ArrayList<>();
+        store.readActivities(batch, (packageName, startTime, endTime) ->
+        {
+            int index = (int) ((startTime - START) / 60_000);
+            assertEquals(PACKAGE_NAMES.getPackageName(index % APPS + 1), packageName);
+            activities.add(new long[]{startTime, endTime});
+        });
+        return activities;
+    }
+
+    /**
+     * Gets the start time of the activity with an index.
+     *
+     * @param index the index
+     * @return the start time
+     */
+    protected static long start(int index)
+    {
+        return START + index * 60_000L;
+    }
+
+    /**
+     * Gets the end time of the activity with an index.
+     *
+     * @param index the index
+     * @return the end time
+     */
+    protected static long end(int index)
+    {
+        return start(index) + 30_000;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import com.yona.plugin.services.api.model.ActivityBatch;
+import com.yona.plugin.services.api.model.ActivityRecord;
+import com.yona.plugin.services.api.service.AppDictionary;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class FileLogActivityStoreTest extends ActivityStoreConformanceTest
+{
+    private static final int SEGMENT_RECORDS = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Override
+    protected ActivityStore openStore() throws IOException
+    {
+        return new FileLogActivityStore(new File(folder.getRoot(), "activities"), PACKAGE_NAMES, SEGMENT_RECORDS);
+    }
+
+    @Override
+    protected boolean isPersistent()
+    {
+        return true;
+    }
+
+    @Test
+    public void activityReplacingAnAcknowledgedOneIsDropped() throws IOException
+    {
+        append(2);
+        ActivityBatch batch = store.readBatch(0, 1);
+        store.ack(batch.getFirstId(), batch.getLastId());
+        store.append(Collections.singletonList(new ActivityRecord(1, start(0), start(0) + 5_000)));
+        store.flush();
+        assertEquals(1, store.count());
+        assertEquals(Collections.singletonList(1), readIndexes(store.readBatch(0, 10)));
+    }
+
+    @Test
+    public void reopenAfterPartiallyWrittenSegment() throws IOException
+    {
+        // Segments with the ids 1 to 4, 5 to 8 and 9 to 12.
+        append(12);
+        store.close();
+        // The record with id 7 was never completed, so the second segment ends after id 6.
+        invalidateRecord(5, 2);
+        store = openStore();
+
+        assertEquals(10, store.count());
+        ActivityBatch batch = store.readBatch(0, 100);
+        assertEquals(1, batch.getFirstId());
+        assertEquals(12, batch.getLastId());
+        assertEquals(10, batch.getSize());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 8, 9, 10, 11), readIndexes(batch));
+
+        ActivityBatch afterGap = store.readBatch(6, 100);
+        assertEquals(9, afterGap.getFirstId());
+        assertEquals(Arrays.asList(8, 9, 10, 11), readIndexes(afterGap));
+
+        ActivityBatch acrossGap = store.readBatch(4, 3);
+        assertEquals(Arrays.asList(4, 5, 8), readIndexes(acrossGap));
+        store.ack(acrossGap.getFirstId(), acrossGap.getLastId());
+        assertEquals(7, store.count());
+        assertEquals(end(0), store.oldestTimestamp());
+
+        store.ack(1, 4);
+        assertEquals(end(9), store.oldestTimestamp());
+        store.ack(10, 12);
+        assertEquals(0, store.count());
+        assertEquals(0, store.oldestTimestamp());
+        assertNull(store.readBatch(0, 100));
+    }
+
+    @Test
+    public void reopenAfterPartiallyWrittenLastSegment() throws IOException
+    {
+        append(7);
+        store.close();
+        invalidateRecord(5, 1);
+        store = openStore();
+
+        assertEquals(5, store.count());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), readIndexes(store.readBatch(0, 100)));
+        // The ids continue after the last complete record.
+        append(7, 1);
+        ActivityBatch appended = store.readBatch(5, 100);
+        assertEquals(6, appended.getFirstId());
+        assertEquals(Arrays.asList(7), readIndexes(appended));
+
+        // The record after the incomplete one is not revived by the append.
+        store.close();
+        store = openStore();
+        assertEquals(6, store.count());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 7), readIndexes(store.readBatch(0, 100)));
+    }
+
+    @Test
+    public void reopenAfterTornRecord() throws IOException
+    {
+        append(7);
+        store.close();
+        // Only the page with the start of the record with id 6 was written back before the device crashed.
+        File segment = new File(new File(folder.getRoot(), "activities"), "5.log");
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try
+        {
+            file.seek((long) FileLogActivityStore.RECORD_SIZE + 12);
+            file.writeLong(0);
+        }
+        finally
+        {
+            file.close();
+        }
+        store = openStore();
+
+        // The second segment ends after id 5, the complete record with id 7 after the torn one is dropped.
+        assertEquals(5, store.count());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), readIndexes(store.readBatch(0, 100)));
+        append(7, 1);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 7), readIndexes(store.readBatch(0, 100)));
+    }
+
+    @Test
+    public void closedStoreCannotBeUsed() throws IOException
+    {
+        append(6);
+        store.close();
+        // Closing again is allowed, tearDown does.
+        store.close();
+        try
+        {
+            store.readBatch(0, 10);
+            fail("A closed store was read");
+        }
+        catch (IllegalStateException expected)
+        {
+            // The segments are unmapped.
+        }
+        store = openStore();
+        assertEquals(6, store.count());
+    }
+
+    /**
+     * Clears the application id of a record, as if the process died before it was written.
+     */
+    private void invalidateRecord(long segmentFirstId, int record) throws IOException
+    {
+        File segment = new File(new File(folder.getRoot(), "activities"), segmentFirstId + ".log");
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try
+        {
+            file.seek((long) record * FileLogActivityStore.RECORD_SIZE);
+            file.writeInt(AppDictionary.NO_APP_ID);
+        }
+        finally
+        {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import com.yona.plugin.services.api.model.ActivityBatch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemoryActivityStoreTest extends ActivityStoreConformanceTest
+{
+    private static final int CAPACITY = 16_384;
+
+    @Override
+    protected ActivityStore openStore()
+    {
+        return new MemoryActivityStore(PACKAGE_NAMES, CAPACITY);
+    }
+
+    @Override
+    protected boolean isPersistent()
+    {
+        return false;
+    }
+
+    @Test
+    public void fullRingOverwritesOldest() throws Exception
+    {
+        store = new MemoryActivityStore(PACKAGE_NAMES, 4);
+        append(6);
+        assertEquals(4, store.count());
+        assertEquals(2, ((MemoryActivityStore) store).getOverwritten());
+        ActivityBatch batch = store.readBatch(0, 10);
+        assertEquals(Arrays.asList(2, 3, 4, 5), readIndexes(batch));
+    }
+}
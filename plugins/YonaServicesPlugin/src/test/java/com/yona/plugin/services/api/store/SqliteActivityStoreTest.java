@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.api.store;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.yona.plugin.services.api.db.DBConstant;
+import com.yona.plugin.services.api.db.DatabaseHelper;
+import com.yona.plugin.services.api.db.DatabaseWriter;
+import com.yona.plugin.services.api.manager.dao.ActivityTrackerDAO;
+import com.yona.plugin.services.api.model.ActivityRecord;
+
+import org.junit.After;
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SqliteActivityStoreTest extends ActivityStoreConformanceTest
+{
+    private static final String DATABASE_NAME = "activity_store_test.db";
+    private static final long CLOSE_TIMEOUT = 10_000;
+
+    private DatabaseHelper databaseHelper;
+
+    @Override
+    protected ActivityStore openStore()
+    {
+        if (databaseHelper != null)
+        {
+            databaseHelper.close();
+        }
+        databaseHelper = DatabaseHelper.openSeparateDatabase(RuntimeEnvironment.getApplication(), DATABASE_NAME);
+        // The package names are joined from the applications table.
+        databaseHelper.getWriter().execute(db ->
+        {
+            ContentValues values = new ContentValues();
+            for (int appId = 1; appId <= APPS; appId++)
+            {
+                values.put(DBConstant.APP_ID, appId);
+                values.put(DBConstant.PACKAGE_NAME, PACKAGE_NAMES.getPackageName(appId));
+                db.insertWithOnConflict(DBConstant.TBL_APPS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            return null;
+        });
+        return new SqliteActivityStore(new ActivityTrackerDAO(databaseHelper));
+    }
+
+    @Override
+    protected boolean isPersistent()
+    {
+        return true;
+    }
+
+    @Test
+    public void closeWaitsForQueuedWrites() throws InterruptedException
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        DatabaseWriter writer = databaseHelper.getWriter();
+        blockWriter(release);
+        // Opens the database again once the first write is done, while close() is waiting for the writer.
+        DatabaseWriter.PendingWrite<Long> queued = writer.submit(db -> 1L);
+        Thread closing = new Thread(databaseHelper::close);
+        closing.start();
+        Thread.sleep(100);
+        release.countDown();
+        closing.join(CLOSE_TIMEOUT);
+        assertFalse("close() did not return", closing.isAlive());
+        assertEquals(Long.valueOf(1), queued.get());
+    }
+
+    @Test
+    public void countSkipsRolledBackWrites() throws InterruptedException
+    {
+        append(3);
+        CountDownLatch release = new CountDownLatch(1);
+        DatabaseWriter writer = databaseHelper.getWriter();
+        blockWriter(release);
+        // Queued behind the blocked write, so the saves are committed in one group with the failing write. The
+        // group is rolled back and its writes are run again one by one.
+        store.append(Collections.singletonList(new ActivityRecord(4, start(3), end(3))));
+        store.append(Collections.singletonList(new ActivityRecord(1, start(0), end(0) + 5_000)));
+        DatabaseWriter.PendingWrite<Object> failing = writer.submit(db ->
+        {
+            throw new IllegalStateException("Failing write");
+        });
+        release.countDown();
+        store.flush();
+        try
+        {
+            failing.get();
+            fail("The failing write succeeded");
+        }
+        catch (IllegalStateException expected)
+        {
+            // The other writes of its group are committed without it.
+        }
+        assertEquals(4, store.count());
+        assertEquals(4, DatabaseUtils.queryNumEntries(databaseHelper.getReadableDatabase(), DBConstant.TBL_ACTIVITY_TRACKER));
+    }
+
+    /**
+     * Queues a write that blocks the writer and waits until it runs.
+     *
+     * @param release released to let the write finish
+     * @throws InterruptedException the interrupted exception
+     */
+    private void blockWriter(CountDownLatch release) throws InterruptedException
+    {
+        CountDownLatch writing = new CountDownLatch(1);
+        databaseHelper.getWriter().submit(db ->
+        {
+            writing.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        assertTrue(writing.await(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @After
+    public void deleteDatabase()
+    {
+        databaseHelper.close();
+        Context context = RuntimeEnvironment.getApplication();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.utils;
+
+/**
+ * Times an operation for the benchmarks of the tests. The operation is first run without measuring, so the
+ * JIT compiled it, and its results are consumed, so the JIT cannot drop the work that produced them.
+ */
+public final class MicroBenchmark
+{
+    /**
+     * An operation to time.
+     */
+    public interface Operation
+    {
+        /**
+         * Runs the operation once.
+         *
+         * @param iteration the number of the run, for example to pick the input
+         * @return the result, which is consumed
+         * @throws Exception the exception
+         */
+        Object run(int iteration) throws Exception;
+    }
+
+    private static volatile int sink;
+
+    private MicroBenchmark()
+    {
+
+    }
+
+    /**
+     * Runs an operation as often for warm-up as it is measured, then prints the time it took per run.
+     *
+     * @param name       the name printed with the result
+     * @param iterations the number of measured runs
+     * @param operation  the operation
+     * @return the time per run in nanoseconds
+     * @throws Exception the exception of the operation
+     */
+    public static double measure(String name, int iterations, Operation operation) throws Exception
+    {
+        run(iterations, operation);
+        long start = System.nanoTime();
+        run(iterations, operation);
+        double nanosPerRun = (double) (System.nanoTime() - start) / iterations;
+        System.out.println(String.format("%-50s %12.1f ns/op", name, nanosPerRun));
+        return nanosPerRun;
+    }
+
+    private static void run(int iterations, Operation operation) throws Exception
+    {
+        int hash = 0;
+        for (int i = 0; i < iterations; i++)
+        {
+            Object result = operation.run(i);
+            hash += result == null ? 0 : result.hashCode();
+        }
+        sink += hash;
+    }
+}
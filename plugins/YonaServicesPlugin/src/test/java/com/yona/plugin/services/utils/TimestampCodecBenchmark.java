@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018 Stichting Yona Foundation
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at https://mozilla.org/MPL/2.0/.
+ */
+
+package com.yona.plugin.services.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares {@link TimestampCodec} with a new SimpleDateFormat per call, as DateUtility used before, and checks
+ * that both give the same text in time zones with odd offsets and daylight saving rules.
+ * Not part of the unit tests, run it with {@code ./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*TimestampCodecBenchmark'}.
+ */
+public class TimestampCodecBenchmark
+{
+    private static final int ITERATIONS = 200_000;
+    private static final int SAMPLES = 1024;
+    private static final String[] TIME_ZONES = {"Europe/Amsterdam", "America/St_Johns", "Australia/Lord_Howe",
+            "Pacific/Chatham", "Asia/Kolkata", "America/Sao_Paulo", "UTC"};
+
+    private final long[] timestamps = new long[SAMPLES];
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp()
+    {
+        defaultTimeZone = TimeZone.getDefault();
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            // Within about two years, so daylight saving changes are included.
+            timestamps[i] = now - (long) (random.nextDouble() * 2 * 365 * 24 * 60 * 60 * 1000L);
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        TimeZone.setDefault(defaultTimeZone);
+        TimestampCodec.getInstance().invalidate();
+    }
+
+    @Test
+    public void formatSameAsSimpleDateFormat()
+    {
+        for (String timeZone : TIME_ZONES)
+        {
+            setTimeZone(timeZone);
+            SimpleDateFormat simpleDateFormat = new SimpleDateFormat(AppConstant.YONA_LONG_DATE_FORMAT, Locale.US);
+            for (long timestamp : timestamps)
+            {
+                String formatted = TimestampCodec.getInstance().format(timestamp);
+                assertEquals(simpleDateFormat.format(new Date(timestamp)), formatted);
+                assertEquals(timestamp, TimestampCodec.getInstance().parse(formatted));
+            }
+        }
+    }
+
+    @Test
+    public void format() throws Exception
+    {
+        setTimeZone("Europe/Amsterdam");
+        TimestampCodec codec = TimestampCodec.getInstance();
+        // Activities are formatted in order of time, the same hour again and again.
+        long start = timestamps[0];
+        MicroBenchmark.measure("TimestampCodec.format", ITERATIONS, i -> codec.format(start + i * 1000L));
+        MicroBenchmark.measure("TimestampCodec.format, random times", ITERATIONS, i -> codec.format(timestamps[i % SAMPLES]));
+        MicroBenchmark.measure("new SimpleDateFormat().format", ITERATIONS, i ->
+                new SimpleDateFormat(AppConstant.YONA_LONG_DATE_FORMAT, Locale.getDefault()).format(new Date(start + i * 1000L)));
+    }
+
+    @Test
+    public void parse() throws Exception
+    {
+        setTimeZone("Europe/Amsterdam");
+        TimestampCodec codec = TimestampCodec.getInstance();
+        String[] formatted = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            formatted[i] = codec.format(timestamps[i]);
+        }
+        MicroBenchmark.measure("TimestampCodec.parse", ITERATIONS, i -> codec.parse(formatted[i % SAMPLES]));
+        MicroBenchmark.measure("new SimpleDateFormat().parse", ITERATIONS, i ->
+                new SimpleDateFormat(AppConstant.YONA_LONG_DATE_FORMAT, Locale.getDefault()).parse(formatted[i % SAMPLES]));
+    }
+
+    private static void setTimeZone(String timeZone)
+    {
+        TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+        TimestampCodec.getInstance().invalidate();
+    }
+}
@@ -69,6 +69,28 @@ exports.postActivitiesToServer = function(userCallback) {
   });
 };
 
+/**
+ * Gets the metrics of the app monitoring loop
+ *
+ * @return [ Object ]
+ */
+exports.getMonitoringMetrics = function(userCallback) {
+  return new Promise(function(resolve, reject) {
+    cordova.exec(resolve, reject, "BackgroundMode", "getMonitoringMetrics", []);
+  });
+};
+
+/**
+ * Gets the timing, byte and failure metrics of the network calls
+ *
+ * @return [ Object ]
+ */
+exports.getNetworkMetrics = function(userCallback) {
+  return new Promise(function(resolve, reject) {
+    cordova.exec(resolve, reject, "BackgroundMode", "getNetworkMetrics", []);
+  });
+};
+
 
 /**
  * Activates the background mode. When activated the application
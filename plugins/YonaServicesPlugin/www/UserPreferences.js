@@ -40,6 +40,46 @@ exports.setAppActivityUrl = createSetter(isString, "setAppActivityUrl");
  */
 exports.setYonaPassword = createSetter(isString, "setYonaPassword");
 
+/**
+ * Enables or disables gzip compression of request bodies in the preferences.
+ *
+ * @function
+ * @param {Boolean} value The new value for the preference.
+ * @param {Function} [successCallback] A callback which is called if the operation is completed
+ * successfully. Invoked with `()`.
+ * @param {Function} [errorCallback] A callback which is called if an error occurs.
+ * Invoked with `(err)`.
+ */
+exports.setRequestCompression = createSetter(isBoolean, "setRequestCompression");
+
+/**
+ * Sets the storage mode of the database in the preferences, either "WRITE_AHEAD_LOG" or
+ * "ROLLBACK_JOURNAL". It applies the next time the app is started.
+ *
+ * @function
+ * @param {String} value The new value for the preference.
+ * @param {Function} [successCallback] A callback which is called if the operation is completed
+ * successfully. Invoked with `()`.
+ * @param {Function} [errorCallback] A callback which is called if an error occurs.
+ * Invoked with `(err)`.
+ */
+exports.setDatabaseStorageMode = createSetter(isString, "setDatabaseStorageMode");
+
+/**
+ * Sets where activities are stored until they are uploaded in the preferences, either "SQLITE" or
+ * "FILE_LOG". It applies the next time the app is started, the activities that were not uploaded
+ * yet are then moved from the previous store to the new one. The "MEMORY" store is only available
+ * to the sync benchmark and is rejected.
+ *
+ * @function
+ * @param {String} value The new value for the preference.
+ * @param {Function} [successCallback] A callback which is called if the operation is completed
+ * successfully. Invoked with `()`.
+ * @param {Function} [errorCallback] A callback which is called if an error occurs.
+ * Invoked with `(err)`.
+ */
+exports.setActivityStore = createSetter(isString, "setActivityStore");
+
 /**
  * Gets the Migration data from the preferences.
  *
@@ -135,6 +175,10 @@ function isString(value) {
   return typeof value === "string";
 }
 
+function isBoolean(value) {
+  return typeof value === "boolean";
+}
+
 function noop() {}
 
 function toError(errMessage) {